@@ -17,8 +17,10 @@ import com.pusher.client.channel.impl.PrivateEncryptedChannelImpl;
 import com.pusher.client.connection.Connection;
 import com.pusher.client.connection.ConnectionEventListener;
 import com.pusher.client.connection.ConnectionState;
+import com.pusher.client.connection.impl.ConnectionPool;
 import com.pusher.client.connection.impl.InternalConnection;
 import com.pusher.client.util.Factory;
+import com.pusher.client.util.InboundQueue;
 
 /**
  * This class is the main entry point for accessing Pusher.
@@ -83,7 +85,7 @@ public class Pusher implements Client {
      */
     public Pusher(final String apiKey, final PusherOptions pusherOptions) {
 
-        this(apiKey, pusherOptions, new Factory());
+        this(apiKey, pusherOptions, new Factory(pusherOptions));
     }
 
     /**
@@ -119,6 +121,18 @@ public class Pusher implements Client {
         return connection;
     }
 
+    /**
+     * Gets the queue of the channel events received by this instance which
+     * are waiting to be handled, e.g. to monitor its depth and the number of
+     * events dropped when it was full.
+     *
+     * @return The {@link InboundQueue} of this instance.
+     * @see PusherOptions#setInboundQueue(int, com.pusher.client.connection.InboundOverflowPolicy)
+     */
+    public InboundQueue getInboundQueue() {
+        return factory.getInboundQueue();
+    }
+
     /**
      * Connects to Pusher. Any {@link ConnectionEventListener}s that have
      * already been registered using the
@@ -280,7 +294,7 @@ public class Pusher implements Client {
 
         throwExceptionIfNoAuthorizerHasBeenSet();
 
-        final PrivateChannelImpl channel = factory.newPrivateChannel(connection, channelName,
+        final PrivateChannelImpl channel = factory.newPrivateChannel(connectionFor(channelName), channelName,
                 pusherOptions.getAuthorizer());
         channelManager.subscribeTo(channel, listener, eventNames);
 
@@ -312,7 +326,7 @@ public class Pusher implements Client {
         throwExceptionIfNoAuthorizerHasBeenSet();
 
         final PrivateEncryptedChannelImpl channel = factory.newPrivateEncryptedChannel(
-                        connection, channelName, pusherOptions.getAuthorizer());
+                        connectionFor(channelName), channelName, pusherOptions.getAuthorizer());
         channelManager.subscribeTo(channel, listener, eventNames);
 
         return channel;
@@ -351,7 +365,7 @@ public class Pusher implements Client {
 
         throwExceptionIfNoAuthorizerHasBeenSet();
 
-        final PresenceChannelImpl channel = factory.newPresenceChannel(connection, channelName,
+        final PresenceChannelImpl channel = factory.newPresenceChannel(connectionFor(channelName), channelName,
                 pusherOptions.getAuthorizer());
         channelManager.subscribeTo(channel, listener, eventNames);
 
@@ -371,6 +385,14 @@ public class Pusher implements Client {
 
     /* implementation detail */
 
+    // the connection a private channel authorizes for and triggers on
+    private InternalConnection connectionFor(final String channelName) {
+        if (connection instanceof ConnectionPool) {
+            return ((ConnectionPool)connection).routeFor(channelName);
+        }
+        return connection;
+    }
+
     private void throwExceptionIfNoAuthorizerHasBeenSet() {
         if (pusherOptions.getAuthorizer() == null) {
             throw new IllegalStateException(
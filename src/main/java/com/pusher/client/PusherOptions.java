@@ -3,7 +3,22 @@ package com.pusher.client;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLContext;
+
+import com.pusher.client.channel.BufferOverflowPolicy;
+import com.pusher.client.connection.InboundOverflowPolicy;
+import com.pusher.client.connection.QuadraticBackoff;
+import com.pusher.client.connection.ReconnectionPolicy;
+import com.pusher.client.util.JsonCodec;
 
 /**
  * Configuration for a {@link com.pusher.client.Pusher} instance.
@@ -27,6 +42,7 @@ public class PusherOptions {
 
     private static final int MAX_RECONNECTION_ATTEMPTS = 6; //Taken from the Swift lib
     private static final int MAX_RECONNECT_GAP_IN_SECONDS = 30;
+    private static final long DEFAULT_ENDPOINT_STAGGER = 250;
 
     // Note that the primary cluster lives on a different domain
     // (others are subdomains of pusher.com). This is not an oversight.
@@ -41,6 +57,25 @@ public class PusherOptions {
     private Proxy proxy = Proxy.NO_PROXY;
     private int maxReconnectionAttempts = MAX_RECONNECTION_ATTEMPTS;
     private int maxReconnectGapInSeconds = MAX_RECONNECT_GAP_IN_SECONDS;
+    private ReconnectionPolicy reconnectionPolicy;
+    private JsonCodec jsonCodec;
+    private int dispatchStripes = 1;
+    private long latencyProbeInterval;
+    private boolean connectionHandover;
+    private int connectionPoolSize = 1;
+    private List<String> redundantHosts = Collections.emptyList();
+    private final List<String> alternativeEndpoints = new ArrayList<String>();
+    private long endpointStagger = DEFAULT_ENDPOINT_STAGGER;
+    private SSLContext sslContext;
+    private int clientEventBufferCapacity;
+    private long clientEventMaxAge;
+    private BufferOverflowPolicy clientEventOverflowPolicy = BufferOverflowPolicy.REJECT;
+    private double clientEventRate;
+    private int clientEventBurst;
+    private int inboundQueueCapacity;
+    private InboundOverflowPolicy inboundOverflowPolicy = InboundOverflowPolicy.BLOCK;
+    private Executor dispatchExecutor;
+    private ScheduledExecutorService timerExecutor;
 
     /**
      * @deprecated
@@ -237,10 +272,39 @@ public class PusherOptions {
      * @return the WebSocket URL
      */
     public String buildUrl(final String apiKey) {
+        return buildUrl(apiKey, host);
+    }
+
+    /**
+     * Construct the URL for a WebSocket connection to another host, using the
+     * other options previously set on this object
+     *
+     * @param apiKey The API key
+     * @param host The host to connect to
+     * @return the WebSocket URL
+     */
+    public String buildUrl(final String apiKey, final String host) {
         return String.format("%s://%s:%s/app/%s%s", useTLS ? WSS_SCHEME : WS_SCHEME, host, useTLS ? wssPort
                 : wsPort, apiKey, URI_SUFFIX);
     }
 
+    /**
+     * Construct the URLs of all the endpoints to race when connecting: the
+     * one built by {@link #buildUrl(String)} first, followed by those added
+     * with {@link #addAlternativeEndpoint(String, int, boolean)}
+     *
+     * @param apiKey The API key
+     * @return the WebSocket URLs, in the order they are dialled
+     */
+    public List<String> buildEndpointUrls(final String apiKey) {
+        final List<String> urls = new ArrayList<String>();
+        urls.add(buildUrl(apiKey));
+        for (final String endpoint : alternativeEndpoints) {
+            urls.add(String.format("%s/app/%s%s", endpoint, apiKey, URI_SUFFIX));
+        }
+        return urls;
+    }
+
     /**
      *
      * The default value is Proxy.NO_PROXY.
@@ -278,6 +342,426 @@ public class PusherOptions {
         return maxReconnectGapInSeconds;
     }
 
+    /**
+     * Sets the policy deciding how long to wait before each reconnection
+     * attempt, e.g. a {@link com.pusher.client.connection.DecorrelatedJitterBackoff}
+     * so that many clients which lost their connections together don't all
+     * reconnect at the same instant.
+     *
+     * The default waits 1, 4, 9, .. seconds, up to
+     * {@link #setMaxReconnectGapInSeconds(int)}.
+     *
+     * @param reconnectionPolicy
+     *            the policy to use, or null for the default
+     * @return this, for chaining
+     */
+    public PusherOptions setReconnectionPolicy(final ReconnectionPolicy reconnectionPolicy) {
+        this.reconnectionPolicy = reconnectionPolicy;
+        return this;
+    }
+
+    /**
+     * @return the reconnection policy set, or otherwise the default one
+     */
+    public ReconnectionPolicy getReconnectionPolicy() {
+        if (reconnectionPolicy != null) {
+            return reconnectionPolicy;
+        }
+        return new QuadraticBackoff(TimeUnit.SECONDS.toMillis(maxReconnectGapInSeconds));
+    }
+
+    /**
+     * Sets the codec used to encode and decode the JSON messages exchanged
+     * with Pusher. A single codec is shared by the connection and all the
+     * channels of a {@link com.pusher.client.Pusher} instance.
+     *
+     * The default is a {@link com.pusher.client.util.GsonJsonCodec}; the
+     * dependency-free {@link com.pusher.client.util.StreamingJsonCodec} is
+     * faster on the hot path.
+     *
+     * @param jsonCodec
+     *            the codec to use, or null for the default
+     * @return this, for chaining
+     */
+    public PusherOptions setJsonCodec(final JsonCodec jsonCodec) {
+        this.jsonCodec = jsonCodec;
+        return this;
+    }
+
+    /**
+     * @return the JSON codec, or null if the default should be used
+     */
+    public JsonCodec getJsonCodec() {
+        return jsonCodec;
+    }
+
+    /**
+     * Sets the number of threads over which channel events are dispatched to
+     * listeners. Each channel is pinned to one of them by its name, so the
+     * events of a channel are still delivered in order, while unrelated
+     * channels, and connection state handling, no longer wait on each other's
+     * listeners.
+     *
+     * @param dispatchStripes
+     *            the number of dispatch threads, default = 1, i.e. everything
+     *            is delivered on the single event thread
+     * @return this, for chaining
+     */
+    public PusherOptions setDispatchStripes(final int dispatchStripes) {
+        if (dispatchStripes < 1) {
+            throw new IllegalArgumentException("dispatchStripes must be at least 1");
+        }
+        this.dispatchStripes = dispatchStripes;
+        return this;
+    }
+
+    public int getDispatchStripes() {
+        return dispatchStripes;
+    }
+
+    /**
+     * Sets the executor on which events are handled and listeners are called,
+     * instead of threads owned by the library. The tasks of a client are still
+     * run one at a time and in order (per dispatch stripe), so any executor
+     * will do, including one that starts a virtual thread per task, and it
+     * can be shared between clients.
+     *
+     * The executor belongs to the caller: it is never shut down by the
+     * library.
+     *
+     * @param dispatchExecutor
+     *            the executor, or null for a library owned thread
+     * @return this, for chaining
+     */
+    public PusherOptions setDispatchExecutor(final Executor dispatchExecutor) {
+        this.dispatchExecutor = dispatchExecutor;
+        return this;
+    }
+
+    public Executor getDispatchExecutor() {
+        return dispatchExecutor;
+    }
+
+    /**
+     * Sets the executor used for the activity and reconnection timers,
+     * instead of a thread owned by the library. It can be shared between
+     * clients, and is never shut down by the library.
+     *
+     * @param timerExecutor
+     *            the executor, or null for a library owned thread
+     * @return this, for chaining
+     */
+    public PusherOptions setTimerExecutor(final ScheduledExecutorService timerExecutor) {
+        this.timerExecutor = timerExecutor;
+        return this;
+    }
+
+    public ScheduledExecutorService getTimerExecutor() {
+        return timerExecutor;
+    }
+
+    /**
+     * Sets how often to ping Pusher to measure the round-trip time of the
+     * connection, whether or not it is idle. The measurements are available
+     * from {@link com.pusher.client.connection.Connection#getLatencyStats()}.
+     *
+     * @param latencyProbeInterval
+     *            milliseconds between probes, default = 0, i.e. only the
+     *            pings sent to an idle connection are measured
+     * @return this, for chaining
+     */
+    public PusherOptions setLatencyProbeInterval(final long latencyProbeInterval) {
+        if (latencyProbeInterval < 0) {
+            throw new IllegalArgumentException("latencyProbeInterval must not be negative");
+        }
+        this.latencyProbeInterval = latencyProbeInterval;
+        return this;
+    }
+
+    public long getLatencyProbeInterval() {
+        return latencyProbeInterval;
+    }
+
+    /**
+     * Sets whether a connection which stopped answering pings, or which
+     * Pusher asked to be replaced, is handed over to a new one without a gap.
+     * A second connection is opened and subscribed to every channel while
+     * the old one is still open, and only once all the subscriptions have
+     * succeeded is the old connection closed. Events arriving on both
+     * connections in the meantime are delivered once.
+     *
+     * If the new connection isn't ready within the pong timeout, the old
+     * connection is closed and reconnected as usual.
+     *
+     * @param connectionHandover
+     *            whether to hand over to a new connection, default = false
+     * @return this, for chaining
+     */
+    public PusherOptions setConnectionHandover(final boolean connectionHandover) {
+        this.connectionHandover = connectionHandover;
+        return this;
+    }
+
+    public boolean isConnectionHandover() {
+        return connectionHandover;
+    }
+
+    /**
+     * Sets the number of connections to Pusher to spread the channels over.
+     * Each channel is subscribed over one of them, picked by hashing its
+     * name, so that the traffic of many busy channels isn't limited to what
+     * a single socket can carry.
+     *
+     * With more than one connection,
+     * {@link com.pusher.client.Pusher#getConnection()} returns a
+     * {@link com.pusher.client.connection.impl.ConnectionPool}, which can be
+     * resized later on.
+     *
+     * @param connectionPoolSize
+     *            the number of connections, default = 1
+     * @return this, for chaining
+     */
+    public PusherOptions setConnectionPoolSize(final int connectionPoolSize) {
+        if (connectionPoolSize < 1) {
+            throw new IllegalArgumentException("connectionPoolSize must be at least 1");
+        }
+        this.connectionPoolSize = connectionPoolSize;
+        return this;
+    }
+
+    public int getConnectionPoolSize() {
+        return connectionPoolSize;
+    }
+
+    /**
+     * Keeps further connections to Pusher, one to each of the given hosts,
+     * alongside the main one. Every channel is subscribed on all of them and
+     * each event is delivered from whichever connection receives it first,
+     * so a slow edge node or a dropped connection doesn't hold events up.
+     * The hosts may be the same as the main one, or those of other clusters
+     * of the same app, e.g. "ws-eu.pusher.com".
+     *
+     * Events are matched by their content over a window of the most recent
+     * ones, so a connection lagging far behind the others may deliver a
+     * duplicate. Redundant connections cannot be combined with
+     * {@link #setConnectionPoolSize(int)}.
+     *
+     * @param hosts
+     *            the hosts of the additional connections, none by default
+     * @return this, for chaining
+     */
+    public PusherOptions setRedundantHosts(final String... hosts) {
+        for (final String host : hosts) {
+            if (host == null || host.isEmpty()) {
+                throw new IllegalArgumentException("Redundant hosts must not be null or empty");
+            }
+        }
+        this.redundantHosts = Collections.unmodifiableList(new ArrayList<String>(Arrays.asList(hosts)));
+        return this;
+    }
+
+    public List<String> getRedundantHosts() {
+        return redundantHosts;
+    }
+
+    /**
+     * Adds an endpoint to dial alongside the main one when connecting, e.g.
+     * another host, another port, or plain ws as a fallback for networks
+     * which interfere with wss. The main endpoint is dialled first and each
+     * alternative endpoint follows after {@link #setEndpointStagger(long)},
+     * or straight away if the previous attempt failed. The first connection
+     * on which Pusher confirms the connection is kept and the others are
+     * closed.
+     *
+     * Alternative endpoints only apply to a single connection, not to
+     * {@link #setConnectionPoolSize(int)} or
+     * {@link #setRedundantHosts(String...)}.
+     *
+     * @param host
+     *            the host to connect to
+     * @param port
+     *            the port to connect to
+     * @param useTLS
+     *            whether to connect with wss rather than ws
+     * @return this, for chaining
+     */
+    public PusherOptions addAlternativeEndpoint(final String host, final int port, final boolean useTLS) {
+        if (host == null || host.isEmpty()) {
+            throw new IllegalArgumentException("host must not be null or empty");
+        }
+        if (port < 1 || port > 65535) {
+            throw new IllegalArgumentException("port must be between 1 and 65535, got " + port);
+        }
+        alternativeEndpoints.add(String.format("%s://%s:%s", useTLS ? WSS_SCHEME : WS_SCHEME, host, port));
+        return this;
+    }
+
+    /**
+     * Sets how long to wait for an endpoint to connect before also dialling
+     * the next one added with
+     * {@link #addAlternativeEndpoint(String, int, boolean)}.
+     *
+     * @param endpointStagger
+     *            milliseconds between dialling endpoints, default = 250
+     * @return this, for chaining
+     */
+    public PusherOptions setEndpointStagger(final long endpointStagger) {
+        if (endpointStagger < 0) {
+            throw new IllegalArgumentException("endpointStagger must not be negative");
+        }
+        this.endpointStagger = endpointStagger;
+        return this;
+    }
+
+    public long getEndpointStagger() {
+        return endpointStagger;
+    }
+
+    /**
+     * Sets the SSLContext used for wss connections. Every connection of a
+     * client already shares one, so that reconnections can resume a TLS
+     * session instead of going through a full handshake; setting the same
+     * context on the options of several clients lets them share its session
+     * cache too, and allows custom key or trust stores.
+     *
+     * @param sslContext
+     *            an initialised SSLContext, or null for a new one with java's
+     *            default key and trust store per client
+     * @return this, for chaining
+     */
+    public PusherOptions setSSLContext(final SSLContext sslContext) {
+        this.sslContext = sslContext;
+        return this;
+    }
+
+    public SSLContext getSSLContext() {
+        return sslContext;
+    }
+
+    /**
+     * Buffers the client events triggered on a private or presence channel
+     * while the connection is down or the channel is being subscribed again,
+     * instead of throwing an IllegalStateException. The buffered events are
+     * sent in order once the channel is subscribed, and dropped if the
+     * channel is unsubscribed or fails to subscribe.
+     *
+     * @param capacity
+     *            the number of events buffered per channel, default = 0,
+     *            i.e. no buffering
+     * @param maxAge
+     *            milliseconds after which a buffered event is dropped rather
+     *            than sent late, or 0 for no limit
+     * @param overflowPolicy
+     *            what to do with an event triggered while the buffer is full
+     * @return this, for chaining
+     */
+    public PusherOptions setClientEventBuffer(final int capacity, final long maxAge,
+            final BufferOverflowPolicy overflowPolicy) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity must not be negative");
+        }
+        if (maxAge < 0) {
+            throw new IllegalArgumentException("maxAge must not be negative");
+        }
+        if (overflowPolicy == null) {
+            throw new IllegalArgumentException("overflowPolicy must not be null");
+        }
+        this.clientEventBufferCapacity = capacity;
+        this.clientEventMaxAge = maxAge;
+        this.clientEventOverflowPolicy = overflowPolicy;
+        return this;
+    }
+
+    public int getClientEventBufferCapacity() {
+        return clientEventBufferCapacity;
+    }
+
+    public long getClientEventMaxAge() {
+        return clientEventMaxAge;
+    }
+
+    public BufferOverflowPolicy getClientEventOverflowPolicy() {
+        return clientEventOverflowPolicy;
+    }
+
+    /**
+     * Limits the rate at which the client events of all the channels are
+     * sent, as Pusher closes connections which exceed its own limit. Client
+     * events beyond the rate wait until they can be sent and, while waiting,
+     * are replaced by later events with the same name on the same channel,
+     * so only the latest state is sent. Events still waiting when their
+     * channel stops being subscribed go into the client event buffer, if
+     * one is set, to be sent once the channel is subscribed again, and are
+     * dropped otherwise.
+     *
+     * @param eventsPerSecond
+     *            the sustained rate, e.g. 10 for Pusher's default limit, or 0
+     *            for no limit, default = 0
+     * @param burst
+     *            the number of client events which can be sent at once after
+     *            a quiet period
+     * @return this, for chaining
+     */
+    public PusherOptions setClientEventRateLimit(final double eventsPerSecond, final int burst) {
+        if (eventsPerSecond < 0) {
+            throw new IllegalArgumentException("eventsPerSecond must not be negative");
+        }
+        if (burst < 1) {
+            throw new IllegalArgumentException("burst must be at least 1");
+        }
+        this.clientEventRate = eventsPerSecond;
+        this.clientEventBurst = burst;
+        return this;
+    }
+
+    public double getClientEventRate() {
+        return clientEventRate;
+    }
+
+    public int getClientEventBurst() {
+        return clientEventBurst;
+    }
+
+    /**
+     * Bounds the channel events received from Pusher which wait to be
+     * handled, together with the deliveries to channel listeners which wait
+     * to run, so that listeners falling behind can't exhaust the heap. Events
+     * beyond the capacity are handled by the overflow policy. The depth of the
+     * queue and the number of events dropped are available from
+     * {@link com.pusher.client.Pusher#getInboundQueue()}.
+     *
+     * Connection events, such as pongs and errors, are never queued behind
+     * channel events. The internal events of channels, such as
+     * subscription_succeeded, keep their place among the channel events but
+     * are never dropped.
+     *
+     * @param capacity
+     *            the number of events and deliveries which may wait, default
+     *            = 0, i.e. no limit
+     * @param overflowPolicy
+     *            what to do with an event received while the queue is full
+     * @return this, for chaining
+     */
+    public PusherOptions setInboundQueue(final int capacity, final InboundOverflowPolicy overflowPolicy) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity must not be negative");
+        }
+        if (overflowPolicy == null) {
+            throw new IllegalArgumentException("overflowPolicy must not be null");
+        }
+        this.inboundQueueCapacity = capacity;
+        this.inboundOverflowPolicy = overflowPolicy;
+        return this;
+    }
+
+    public int getInboundQueueCapacity() {
+        return inboundQueueCapacity;
+    }
+
+    public InboundOverflowPolicy getInboundOverflowPolicy() {
+        return inboundOverflowPolicy;
+    }
+
     private static String readVersionFromProperties() {
         InputStream inStream = null;
         try {
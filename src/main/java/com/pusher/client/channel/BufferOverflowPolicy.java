@@ -0,0 +1,27 @@
+package com.pusher.client.channel;
+
+/**
+ * Decides what happens to a client event triggered while the buffer holding
+ * the client events of a channel which is being resubscribed is full.
+ *
+ * @see com.pusher.client.PusherOptions#setClientEventBuffer(int, long, BufferOverflowPolicy)
+ */
+public enum BufferOverflowPolicy {
+
+    /**
+     * Drop the event buffered first to make room for the new one.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Drop the new event, keeping those already buffered.
+     */
+    DROP_NEWEST,
+
+    /**
+     * Throw an IllegalStateException from
+     * {@link PrivateChannel#trigger(String, String)}, as when no buffer is
+     * used.
+     */
+    REJECT
+}
@@ -80,6 +80,56 @@ public interface Channel {
      */
     void unbind(String eventName, SubscriptionEventListener listener);
 
+    /**
+     * Binds a {@link TypedSubscriptionEventListener} to an event. The data of
+     * each matching event is decoded straight from the received frame into an
+     * instance of the given type before the listener is notified, saving the
+     * listener from parsing the result of {@link PusherEvent#getData()}.
+     *
+     * @param <T>
+     *            The type into which the event data is decoded.
+     * @param eventName
+     *            The name of the event to listen to.
+     * @param type
+     *            The class into which the event data should be decoded.
+     * @param listener
+     *            A listener to receive notifications when the event is
+     *            received.
+     * @throws IllegalArgumentException
+     *             If the name of the event, the type or the listener is null.
+     * @throws IllegalStateException
+     *             If the channel has been unsubscribed by calling
+     *             {@link com.pusher.client.Pusher#unsubscribe(String)}.
+     */
+    default <T> void bind(String eventName, Class<T> type, TypedSubscriptionEventListener<T> listener) {
+        if (type == null) {
+            throw new IllegalArgumentException("Cannot bind to channel " + getName() + " with a null type");
+        }
+        bind(eventName, new TypedSubscriptionEventAdapter<T>(type, listener));
+    }
+
+    /**
+     * Unbinds a previously bound {@link TypedSubscriptionEventListener} from
+     * an event.
+     *
+     * @param <T>
+     *            The type into which the event data was decoded.
+     * @param eventName
+     *            The name of the event to stop listening to.
+     * @param type
+     *            The class the listener was bound with.
+     * @param listener
+     *            The listener to unbind from the event.
+     * @throws IllegalArgumentException
+     *             If the name of the event or the listener is null.
+     * @throws IllegalStateException
+     *             If the channel has been unsubscribed by calling
+     *             {@link com.pusher.client.Pusher#unsubscribe(String)}.
+     */
+    default <T> void unbind(String eventName, Class<T> type, TypedSubscriptionEventListener<T> listener) {
+        unbind(eventName, new TypedSubscriptionEventAdapter<T>(type, listener));
+    }
+
     /**
      *
      * @return Whether or not the channel is subscribed.
@@ -1,14 +1,98 @@
 package com.pusher.client.channel;
 
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.pusher.client.util.GsonJsonCodec;
+import com.pusher.client.util.JsonCodec;
+import com.pusher.client.util.internal.JsonHeaderScanner;
+import com.pusher.client.util.internal.JsonStringReader;
+
 public class PusherEvent {
+    private static final JsonCodec DEFAULT_CODEC = GsonJsonCodec.getDefault();
+
+    private final String rawJson;
+    private final JsonCodec codec;
     private Map<String, Object> eventData;
 
+    // Envelope fields, decoded on first access when backed by a raw frame
+    private boolean headerScanned;
+    private boolean headerIsPlain;
+    private boolean envelopeDecoded;
+    private boolean envelopeIsPlain = true;
+    private String eventName;
+    private String channelName;
+    private String userId;
+    private String data;
+    private boolean dataReplaced;
+
     public PusherEvent(Map<String, Object> eventData) {
+        this.rawJson = null;
+        this.codec = DEFAULT_CODEC;
         this.eventData = eventData;
     }
 
+    private PusherEvent(final String rawJson, final JsonCodec codec) {
+        this.rawJson = rawJson;
+        this.codec = codec;
+    }
+
+    /**
+     * Decodes a whole frame received from Pusher into an event. This is the
+     * only place an inbound frame is parsed; the resulting event is then
+     * handed down to the connection, the channel manager and the channel.
+     *
+     * The frame is kept as is and only decoded when a getter is first called:
+     * the event and channel names used for routing are scanned out of the
+     * frame without touching the data, the other specialised getters read the
+     * top-level fields without building a tree, and
+     * {@link #getProperty(String)} materializes the whole event.
+     *
+     * @param message The JSON frame as received over the websocket.
+     * @return The decoded event.
+     */
+    public static PusherEvent fromJson(String message) {
+        return fromJson(message, DEFAULT_CODEC);
+    }
+
+    /**
+     * As {@link #fromJson(String)}, materializing the event with the given
+     * codec rather than the default one.
+     *
+     * @param message The JSON frame as received over the websocket.
+     * @param codec The codec of the client which received the frame.
+     * @return The decoded event.
+     */
+    public static PusherEvent fromJson(String message, JsonCodec codec) {
+        return new PusherEvent(message, codec);
+    }
+
+    /**
+     * Returns a copy of this event with the data replaced, for example once
+     * the payload of an encrypted event has been decrypted.
+     *
+     * @param data The new data
+     * @return A new event carrying the same properties as this one.
+     */
+    public PusherEvent withData(String data) {
+        if (rawJson != null) {
+            final PusherEvent copy = new PusherEvent(rawJson, codec);
+            copy.data = data;
+            copy.dataReplaced = true;
+            return copy;
+        }
+        final Map<String, Object> copy = new LinkedHashMap<String, Object>(eventData);
+        copy.put("data", data);
+        return new PusherEvent(copy);
+    }
+
     /**
      * getProperty returns the value associated with the key, or null.
      * It is recommended that you use the specialized getters in this class instead.
@@ -24,7 +108,7 @@ public class PusherEvent {
      *      - JSON null - null
      */
     public Object getProperty(String key) {
-        return eventData.get(key);
+        return getEventData().get(key);
     }
 
     /**
@@ -34,12 +118,195 @@ public class PusherEvent {
      *      The userID string: https://pusher.com/docs/channels/using_channels/events#user-id-in-client-events,
      *      or null if the event is not a client event on a presence channel.
      */
-    public String getUserId() { return (String)eventData.get("user_id"); }
-    public String getChannelName() { return (String)eventData.get("channel"); }
-    public String getEventName() { return (String)eventData.get("event"); }
-    public String getData() { return (String)eventData.get("data"); }
+    public String getUserId() {
+        return decodeEnvelope() ? userId : (String)getEventData().get("user_id");
+    }
+
+    public String getChannelName() {
+        if (scanHeader()) {
+            return channelName;
+        }
+        return decodeEnvelope() ? channelName : (String)getEventData().get("channel");
+    }
+
+    public String getEventName() {
+        if (scanHeader()) {
+            return eventName;
+        }
+        return decodeEnvelope() ? eventName : (String)getEventData().get("event");
+    }
+
+    public String getData() {
+        if (dataReplaced) {
+            return data;
+        }
+        return decodeEnvelope() ? data : (String)getEventData().get("data");
+    }
+
+    /**
+     * Decodes the data of this event into an instance of the provided POJO
+     * bean type, with the codec of the client which received it. With a
+     * {@link GsonJsonCodec} the data is parsed straight out of the received
+     * frame, so this is cheaper than calling {@link #getData()} and parsing
+     * the result.
+     *
+     * @param <T> The type of the data
+     * @param type The class into which the data should be decoded.
+     * @return An instance of type, or null if the event has no data.
+     * @throws JsonSyntaxException If the data can't be decoded into type.
+     */
+    public <T> T getData(final Class<T> type) {
+        if (!(codec instanceof GsonJsonCodec)) {
+            try {
+                return codec.decode(getData(), type);
+            }
+            catch (final IllegalArgumentException e) {
+                throw new JsonSyntaxException(e);
+            }
+        }
+
+        final TypeAdapter<T> adapter = ((GsonJsonCodec)codec).getGson().getAdapter(type);
+        try {
+            if (rawJson != null && !dataReplaced) {
+                final int start = JsonHeaderScanner.valueStart(rawJson, "data");
+                if (start >= 0) {
+                    final JsonReader reader;
+                    if (rawJson.charAt(start) == '"') {
+                        reader = new JsonReader(new JsonStringReader(rawJson, start + 1));
+                    }
+                    else {
+                        final StringReader in = new StringReader(rawJson);
+                        in.skip(start);
+                        reader = new JsonReader(in);
+                    }
+                    return readData(adapter, reader);
+                }
+            }
+
+            final String data = getData();
+            return data == null ? null : readData(adapter, new JsonReader(new StringReader(data)));
+        }
+        catch (final IOException e) {
+            throw new JsonSyntaxException(e);
+        }
+        catch (final IllegalStateException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
 
     public String toString() {
-        return eventData.toString();
+        return getEventData().toString();
+    }
+
+    /* implementation detail */
+
+    /**
+     * Picks the routing fields out of the raw frame without decoding the
+     * rest of it.
+     *
+     * @return false if the frame couldn't be scanned and the envelope has to
+     *      be decoded instead.
+     */
+    private synchronized boolean scanHeader() {
+        if (rawJson == null) {
+            return false;
+        }
+        if (!headerScanned) {
+            final String[] header = JsonHeaderScanner.scan(rawJson, "event", "channel");
+            if (header != null) {
+                eventName = header[0];
+                channelName = header[1];
+                headerIsPlain = true;
+            }
+            headerScanned = true;
+        }
+        return headerIsPlain;
+    }
+
+    /**
+     * Reads the top-level string fields of the raw frame in one streaming
+     * pass, skipping everything else.
+     *
+     * @return false if the event has to be read from the materialized map
+     *      instead, i.e. it isn't backed by a raw frame or one of the fields
+     *      isn't a plain string.
+     */
+    private synchronized boolean decodeEnvelope() {
+        if (rawJson == null) {
+            return false;
+        }
+        if (!envelopeDecoded) {
+            try {
+                final JsonReader reader = new JsonReader(new StringReader(rawJson));
+                reader.setLenient(true);
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    final String name = reader.nextName();
+                    if (name.equals("event")) {
+                        eventName = nextString(reader);
+                    }
+                    else if (name.equals("channel")) {
+                        channelName = nextString(reader);
+                    }
+                    else if (name.equals("user_id")) {
+                        userId = nextString(reader);
+                    }
+                    else if (name.equals("data") && !dataReplaced) {
+                        data = nextString(reader);
+                    }
+                    else {
+                        reader.skipValue();
+                    }
+                }
+            }
+            catch (final IOException e) {
+                throw new JsonSyntaxException(e);
+            }
+            catch (final IllegalStateException e) {
+                throw new JsonSyntaxException(e);
+            }
+            envelopeDecoded = true;
+        }
+        return envelopeIsPlain;
+    }
+
+    private String nextString(final JsonReader reader) throws IOException {
+        final JsonToken token = reader.peek();
+        if (token == JsonToken.STRING) {
+            return reader.nextString();
+        }
+        if (token == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        reader.skipValue();
+        envelopeIsPlain = false;
+        return null;
+    }
+
+    private static <T> T readData(final TypeAdapter<T> adapter, final JsonReader reader) throws IOException {
+        reader.setLenient(true);
+        final JsonToken token;
+        try {
+            token = reader.peek();
+        }
+        catch (final EOFException e) {
+            // empty data, which Gson reads as null
+            return null;
+        }
+        if (token == JsonToken.NULL) {
+            return null;
+        }
+        return adapter.read(reader);
+    }
+
+    private synchronized Map<String, Object> getEventData() {
+        if (eventData == null) {
+            eventData = codec.decodeObject(rawJson);
+            if (dataReplaced) {
+                eventData.put("data", data);
+            }
+        }
+        return eventData;
     }
 }
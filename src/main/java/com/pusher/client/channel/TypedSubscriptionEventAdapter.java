@@ -0,0 +1,54 @@
+package com.pusher.client.channel;
+
+/**
+ * Adapts a {@link TypedSubscriptionEventListener} so it can be bound
+ * alongside plain listeners. Equality is that of the wrapped listener, so a
+ * fresh adapter can be used to unbind.
+ *
+ * Used within the library to implement
+ * {@link Channel#bind(String, Class, TypedSubscriptionEventListener)}. Not
+ * to be used as part of the API.
+ *
+ * @param <T> The type into which the event data is decoded.
+ */
+public final class TypedSubscriptionEventAdapter<T> implements SubscriptionEventListener {
+    private final Class<T> type;
+    private final TypedSubscriptionEventListener<T> listener;
+
+    public TypedSubscriptionEventAdapter(final Class<T> type, final TypedSubscriptionEventListener<T> listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Cannot bind or unbind with a null listener");
+        }
+        this.type = type;
+        this.listener = listener;
+    }
+
+    @Override
+    public void onEvent(final PusherEvent event) {
+        final T data;
+        try {
+            data = event.getData(type);
+        }
+        catch (final RuntimeException e) {
+            listener.onError("Unable to decode data of event " + event.getEventName() + " as " + type.getName(), e);
+            return;
+        }
+        listener.onEvent(event, data);
+    }
+
+    @Override
+    public void onError(final String message, final Exception e) {
+        listener.onError(message, e);
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        return other instanceof TypedSubscriptionEventAdapter
+                && ((TypedSubscriptionEventAdapter<?>)other).listener.equals(listener);
+    }
+
+    @Override
+    public int hashCode() {
+        return listener.hashCode();
+    }
+}
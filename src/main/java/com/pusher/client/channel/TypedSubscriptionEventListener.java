@@ -0,0 +1,44 @@
+package com.pusher.client.channel;
+
+/**
+ * Client applications should implement this interface if they want events
+ * received on a channel to be delivered with their data already decoded into
+ * an application type.
+ *
+ * <p>
+ * To bind your implementation of this interface to a channel, call
+ * {@link Channel#bind(String, Class, TypedSubscriptionEventListener)}.
+ * </p>
+ *
+ * @param <T> The type into which the event data is decoded.
+ */
+public interface TypedSubscriptionEventListener<T> {
+
+    /**
+     * Callback that is fired whenever an event that this
+     * {@linkplain TypedSubscriptionEventListener} has been bound to is
+     * received.
+     *
+     * @param event
+     *            A PusherEvent object which exposes the whole event.
+     *            See {@linkplain PusherEvent} for more.
+     * @param data
+     *            The event data decoded into the bound type, or null if the
+     *            event has no data.
+     */
+    void onEvent(PusherEvent event, T data);
+
+    /**
+     * Callback that is fired whenever an unexpected error occurs processing
+     * for this {@linkplain TypedSubscriptionEventListener}, for example
+     * because the event data could not be decoded into the bound type.
+     *
+     * @param message
+     *            A description of the problem.
+     * @param e
+     *            An associated exception, if available.
+     */
+    default void onError(String message, Exception e) {
+        // No-op
+    }
+}
@@ -1,15 +1,16 @@
 package com.pusher.client.channel;
 
-import com.google.gson.Gson;
+import com.pusher.client.util.GsonJsonCodec;
+import com.pusher.client.util.JsonCodec;
 
 /**
  * Represents a user that is subscribed to a
  * {@link com.pusher.client.channel.PresenceChannel PresenceChannel}.
  */
 public class User {
-    private static final Gson GSON = new Gson();
     private final String id;
     private final String jsonData;
+    private final JsonCodec codec;
 
     /**
      * Create a new user. Users should not be created within an application.
@@ -20,8 +21,21 @@ public class User {
      * @param jsonData The user JSON data
      */
     public User(final String id, final String jsonData) {
+        this(id, jsonData, GsonJsonCodec.getDefault());
+    }
+
+    /**
+     * Used within the library to create a user whose info is decoded with the
+     * codec of the client. Not to be used as part of the API.
+     *
+     * @param id The user id
+     * @param jsonData The user JSON data
+     * @param codec The codec of the client the user was received by
+     */
+    public User(final String id, final String jsonData, final JsonCodec codec) {
         this.id = id;
         this.jsonData = jsonData;
+        this.codec = codec;
     }
 
     /**
@@ -80,7 +94,7 @@ public class User {
      * @return V An instance of clazz, populated with the user info
      */
     public <V> V getInfo(final Class<V> clazz) {
-        return GSON.fromJson(jsonData, clazz);
+        return codec.decode(jsonData, clazz);
     }
 
     @Override
@@ -1,32 +1,35 @@
 package com.pusher.client.channel.impl;
 
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedHashMap;
-import java.util.Map;
-import java.util.Set;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
-import com.google.gson.Gson;
-
-import com.google.gson.GsonBuilder;
 import com.pusher.client.channel.*;
 import com.pusher.client.util.Factory;
+import com.pusher.client.util.JsonCodec;
+import com.pusher.client.util.internal.OutboundMessageEncoder;
 
 public class ChannelImpl implements InternalChannel {
-    protected final Gson GSON;
+    private static final Logger log = Logger.getLogger(ChannelImpl.class.getName());
     private static final String INTERNAL_EVENT_PREFIX = "pusher_internal:";
     protected static final String SUBSCRIPTION_SUCCESS_EVENT = "pusher_internal:subscription_succeeded";
     protected final String name;
-    private final Map<String, Set<SubscriptionEventListener>> eventNameToListenerMap = new HashMap<String, Set<SubscriptionEventListener>>();
+    // copy-on-write: the arrays are never modified once published, so the
+    // inbound path reads them without locking or copying
+    private final ConcurrentMap<String, SubscriptionEventListener[]> eventNameToListeners =
+            new ConcurrentHashMap<String, SubscriptionEventListener[]>();
     protected volatile ChannelState state = ChannelState.INITIAL;
     private ChannelEventListener eventListener;
     private final Factory factory;
+    protected final JsonCodec codec;
     private final Object lock = new Object();
+    // the frames only depend on the channel name, so they are encoded once
+    private String subscribeMessage;
+    private String unsubscribeMessage;
 
     public ChannelImpl(final String channelName, final Factory factory) {
-        GsonBuilder gsonBldr = new GsonBuilder();
-        gsonBldr.registerTypeAdapter(PusherEvent.class, new PusherEventDeserializer());
-        GSON = gsonBldr.create();
         if (channelName == null) {
             throw new IllegalArgumentException("Cannot subscribe to a channel with a null name");
         }
@@ -42,6 +45,7 @@ public class ChannelImpl implements InternalChannel {
 
         name = channelName;
         this.factory = factory;
+        this.codec = factory.getJsonCodec();
     }
 
     /* Channel implementation */
@@ -55,14 +59,30 @@ public class ChannelImpl implements InternalChannel {
     public void bind(final String eventName, final SubscriptionEventListener listener) {
 
         validateArguments(eventName, listener);
+        addListener(eventName, listener);
+    }
 
+    @Override
+    public <T> void bind(final String eventName, final Class<T> type, final TypedSubscriptionEventListener<T> listener) {
+
+        validateArguments(eventName, listener);
+        if (type == null) {
+            throw new IllegalArgumentException("Cannot bind to channel " + name + " with a null type");
+        }
+        addListener(eventName, new TypedSubscriptionEventAdapter<T>(type, listener));
+    }
+
+    private void addListener(final String eventName, final SubscriptionEventListener listener) {
         synchronized (lock) {
-            Set<SubscriptionEventListener> listeners = eventNameToListenerMap.get(eventName);
+            final SubscriptionEventListener[] listeners = eventNameToListeners.get(eventName);
             if (listeners == null) {
-                listeners = new HashSet<SubscriptionEventListener>();
-                eventNameToListenerMap.put(eventName, listeners);
+                eventNameToListeners.put(eventName, new SubscriptionEventListener[] { listener });
+            }
+            else if (indexOf(listeners, listener) < 0) {
+                final SubscriptionEventListener[] updated = Arrays.copyOf(listeners, listeners.length + 1);
+                updated[listeners.length] = listener;
+                eventNameToListeners.put(eventName, updated);
             }
-            listeners.add(listener);
         }
     }
 
@@ -70,14 +90,31 @@ public class ChannelImpl implements InternalChannel {
     public void unbind(final String eventName, final SubscriptionEventListener listener) {
 
         validateArguments(eventName, listener);
+        removeListener(eventName, listener);
+    }
+
+    @Override
+    public <T> void unbind(final String eventName, final Class<T> type, final TypedSubscriptionEventListener<T> listener) {
 
+        validateArguments(eventName, listener);
+        removeListener(eventName, new TypedSubscriptionEventAdapter<T>(type, listener));
+    }
+
+    private void removeListener(final String eventName, final SubscriptionEventListener listener) {
         synchronized (lock) {
-            final Set<SubscriptionEventListener> listeners = eventNameToListenerMap.get(eventName);
-            if (listeners != null) {
-                listeners.remove(listener);
-                if (listeners.isEmpty()) {
-                    eventNameToListenerMap.remove(eventName);
-                }
+            final SubscriptionEventListener[] listeners = eventNameToListeners.get(eventName);
+            final int index = listeners == null ? -1 : indexOf(listeners, listener);
+            if (index < 0) {
+                return;
+            }
+            if (listeners.length == 1) {
+                eventNameToListeners.remove(eventName);
+            }
+            else {
+                final SubscriptionEventListener[] updated = new SubscriptionEventListener[listeners.length - 1];
+                System.arraycopy(listeners, 0, updated, 0, index);
+                System.arraycopy(listeners, index + 1, updated, index, updated.length - index);
+                eventNameToListeners.put(eventName, updated);
             }
         }
     }
@@ -90,28 +127,30 @@ public class ChannelImpl implements InternalChannel {
     /* InternalChannel implementation */
 
     @Override
-    public PusherEvent prepareEvent(String event, String message) {
-        return GSON.fromJson(message, PusherEvent.class);
+    public PusherEvent prepareEvent(final PusherEvent event) {
+        return event;
     }
 
     @Override
-    public void onMessage(final String event, final String message) {
+    public void onMessage(final PusherEvent event) {
 
-        if (event.equals(SUBSCRIPTION_SUCCESS_EVENT)) {
+        final String eventName = event.getEventName();
+        if (eventName.equals(SUBSCRIPTION_SUCCESS_EVENT)) {
             updateState(ChannelState.SUBSCRIBED);
         } else {
-            final Set<SubscriptionEventListener> listeners = getInterestedListeners(event);
+            final SubscriptionEventListener[] listeners = getInterestedListeners(eventName);
             if (listeners != null) {
-                final PusherEvent pusherEvent = prepareEvent(event, message);
+                final PusherEvent pusherEvent = prepareEvent(event);
                 if (pusherEvent != null) {
-                    for (final SubscriptionEventListener listener : listeners) {
-                        factory.queueOnEventThread(new Runnable() {
-                            @Override
-                            public void run() {
-                                listener.onEvent(pusherEvent);
+                    // one task per event, however many listeners there are
+                    factory.queueOnChannelThread(name, new Runnable() {
+                        @Override
+                        public void run() {
+                            for (final SubscriptionEventListener listener : listeners) {
+                                dispatch(listener, pusherEvent);
                             }
-                        });
-                    }
+                        }
+                    });
                 }
             }
         }
@@ -120,29 +159,24 @@ public class ChannelImpl implements InternalChannel {
 
     @Override
     public String toSubscribeMessage() {
+        if (subscribeMessage == null) {
+            subscribeMessage = OutboundMessageEncoder.subscribe(name);
+        }
+        return subscribeMessage;
+    }
 
-        final Map<Object, Object> jsonObject = new LinkedHashMap<Object, Object>();
-        jsonObject.put("event", "pusher:subscribe");
-
-        final Map<Object, Object> dataMap = new LinkedHashMap<Object, Object>();
-        dataMap.put("channel", name);
-
-        jsonObject.put("data", dataMap);
-
-        return GSON.toJson(jsonObject);
+    @Override
+    public String toSubscribeMessage(final String socketId) {
+        // public channels are subscribed the same way on every socket
+        return toSubscribeMessage();
     }
 
     @Override
     public String toUnsubscribeMessage() {
-        final Map<Object, Object> jsonObject = new LinkedHashMap<Object, Object>();
-        jsonObject.put("event", "pusher:unsubscribe");
-
-        final Map<Object, Object> dataMap = new LinkedHashMap<Object, Object>();
-        dataMap.put("channel", name);
-
-        jsonObject.put("data", dataMap);
-
-        return GSON.toJson(jsonObject);
+        if (unsubscribeMessage == null) {
+            unsubscribeMessage = OutboundMessageEncoder.unsubscribe(name);
+        }
+        return unsubscribeMessage;
     }
 
     @Override
@@ -151,7 +185,7 @@ public class ChannelImpl implements InternalChannel {
         this.state = state;
 
         if (state == ChannelState.SUBSCRIBED && eventListener != null) {
-            factory.queueOnEventThread(new Runnable() {
+            factory.queueOnChannelThread(name, new Runnable() {
                 @Override
                 public void run() {
                     eventListener.onSubscriptionSucceeded(ChannelImpl.this.getName());
@@ -189,7 +223,7 @@ public class ChannelImpl implements InternalChannel {
         return new String[] { "^private-.*", "^presence-.*" };
     }
 
-    private void validateArguments(final String eventName, final SubscriptionEventListener listener) {
+    private void validateArguments(final String eventName, final Object listener) {
 
         if (eventName == null) {
             throw new IllegalArgumentException("Cannot bind or unbind to channel " + name + " with a null event name");
@@ -210,17 +244,34 @@ public class ChannelImpl implements InternalChannel {
         }
     }
 
-    protected Set<SubscriptionEventListener> getInterestedListeners(String event) {
-        synchronized (lock) {
-
-            final Set<SubscriptionEventListener> sharedListeners =
-                    eventNameToListenerMap.get(event);
+    /**
+     * @return a snapshot of the listeners bound to the event, in the order
+     *      they were bound, or null if there are none. The array is shared
+     *      and must not be modified.
+     */
+    protected SubscriptionEventListener[] getInterestedListeners(String event) {
+        return eventNameToListeners.get(event);
+    }
 
-            if (sharedListeners == null) {
-                return null;
+    private static int indexOf(final SubscriptionEventListener[] listeners, final SubscriptionEventListener listener) {
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i].equals(listener)) {
+                return i;
             }
+        }
+        return -1;
+    }
 
-            return new HashSet<>(sharedListeners);
+    /**
+     * Calls a single listener, so that one which throws doesn't keep the
+     * event from the listeners after it.
+     */
+    private void dispatch(final SubscriptionEventListener listener, final PusherEvent event) {
+        try {
+            listener.onEvent(event);
+        }
+        catch (final RuntimeException e) {
+            log.log(Level.WARNING, "Listener for event " + event.getEventName() + " on channel " + name + " threw", e);
         }
     }
 }
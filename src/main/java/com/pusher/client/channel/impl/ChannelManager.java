@@ -1,9 +1,12 @@
 package com.pusher.client.channel.impl;
 
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
-import com.google.gson.Gson;
 import com.pusher.client.AuthorizationFailureException;
 import com.pusher.client.channel.Channel;
 import com.pusher.client.channel.ChannelEventListener;
@@ -12,15 +15,16 @@ import com.pusher.client.channel.PrivateEncryptedChannel;
 import com.pusher.client.channel.PresenceChannel;
 import com.pusher.client.channel.PrivateChannel;
 import com.pusher.client.channel.PrivateChannelEventListener;
+import com.pusher.client.channel.PusherEvent;
 import com.pusher.client.connection.ConnectionEventListener;
 import com.pusher.client.connection.ConnectionState;
 import com.pusher.client.connection.ConnectionStateChange;
+import com.pusher.client.connection.impl.CompositeConnection;
 import com.pusher.client.connection.impl.InternalConnection;
 import com.pusher.client.util.Factory;
 
 public class ChannelManager implements ConnectionEventListener {
 
-    private static final Gson GSON = new Gson();
     private final Map<String, InternalChannel> channelNameToChannelMap = new ConcurrentHashMap<String, InternalChannel>();
 
     private final Factory factory;
@@ -77,7 +81,11 @@ public class ChannelManager implements ConnectionEventListener {
         }
 
         this.connection = connection;
-        connection.bind(ConnectionState.CONNECTED, this);
+        // a composite connection has each of its connections resubscribe its
+        // own channels
+        if (!(connection instanceof CompositeConnection)) {
+            connection.bind(ConnectionState.CONNECTED, this);
+        }
     }
 
     public void subscribeTo(final InternalChannel channel, final ChannelEventListener listener, final String... eventNames) {
@@ -97,25 +105,100 @@ public class ChannelManager implements ConnectionEventListener {
         if (channel == null) {
             return;
         }
-        if (connection.getState() == ConnectionState.CONNECTED) {
-            sendUnsubscribeMessage(channel);
+        for (final InternalConnection owner : connectionsFor(channelName)) {
+            if (owner.getState() == ConnectionState.CONNECTED) {
+                sendUnsubscribeMessage(channel, owner);
+            }
         }
     }
 
-    @SuppressWarnings("unchecked")
-    public void onMessage(final String event, final String wholeMessage) {
+    public void onMessage(final PusherEvent event) {
 
-        final Map<Object, Object> json = GSON.fromJson(wholeMessage, Map.class);
-        final Object channelNameObject = json.get("channel");
+        final String channelName = event.getChannelName();
 
-        if (channelNameObject != null) {
-            final String channelName = (String)channelNameObject;
+        if (channelName != null) {
             final InternalChannel channel = channelNameToChannelMap.get(channelName);
 
-            if (channel != null) {
-                channel.onMessage(event, wholeMessage);
+            if (channel == null) {
+                return;
+            }
+            if (channel.isSubscribed() && ChannelImpl.SUBSCRIPTION_SUCCESS_EVENT.equals(event.getEventName())) {
+                // subscribed again on another socket while still subscribed
+                // on a live one, e.g. by a member of a redundant connection
+                return;
+            }
+            channel.onMessage(event);
+        }
+    }
+
+    /**
+     * @return the names of all the channels subscribed to
+     */
+    public Set<String> getChannelNames() {
+        return new HashSet<String>(channelNameToChannelMap.keySet());
+    }
+
+    /**
+     * @param owner a connection, or one of the connections of a composite
+     *            connection
+     * @return the names of the channels subscribed to over that connection
+     */
+    public Set<String> getChannelNames(final InternalConnection owner) {
+        final Set<String> channelNames = new HashSet<String>();
+        for (final String channelName : channelNameToChannelMap.keySet()) {
+            if (connectionsFor(channelName).contains(owner)) {
+                channelNames.add(channelName);
             }
         }
+        return channelNames;
+    }
+
+    /**
+     * Subscribes again to the channels carried by one of the connections of
+     * a composite connection, once that connection is established.
+     */
+    public void resubscribeChannelsOn(final InternalConnection owner) {
+        for (final InternalChannel channel : channelNameToChannelMap.values()) {
+            if (connectionsFor(channel.getName()).contains(owner)) {
+                sendOrQueueSubscribeMessage(channel, owner);
+            }
+        }
+    }
+
+    /**
+     * Subscribes again to a channel, e.g. because it moved to another
+     * connection of a pool.
+     */
+    public void resubscribe(final String channelName) {
+        final InternalChannel channel = channelNameToChannelMap.get(channelName);
+        if (channel != null) {
+            sendOrQueueSubscribeMessage(channel);
+        }
+    }
+
+    /**
+     * Builds the message to subscribe to a channel again on another socket,
+     * leaving the state of the channel as it is. Must be called on the event
+     * thread.
+     *
+     * @param channelName the channel to subscribe to
+     * @param socketId the id of the socket, which private channels are
+     *            authorized for
+     * @return the message, or null if the channel is no longer subscribed to
+     *         or its authorization failed
+     */
+    public String toSubscribeMessage(final String channelName, final String socketId) {
+        final InternalChannel channel = channelNameToChannelMap.get(channelName);
+        if (channel == null) {
+            return null;
+        }
+        try {
+            return channel.toSubscribeMessage(socketId);
+        }
+        catch (final AuthorizationFailureException e) {
+            handleAuthenticationFailure(channel, e);
+            return null;
+        }
     }
 
     /* ConnectionEventListener implementation */
@@ -138,17 +221,28 @@ public class ChannelManager implements ConnectionEventListener {
     /* implementation detail */
 
     private void sendOrQueueSubscribeMessage(final InternalChannel channel) {
+        for (final InternalConnection owner : connectionsFor(channel.getName())) {
+            sendOrQueueSubscribeMessage(channel, owner);
+        }
+    }
+
+    private void sendOrQueueSubscribeMessage(final InternalChannel channel, final InternalConnection owner) {
 
         factory.queueOnEventThread(new Runnable() {
 
             @Override
             public void run() {
 
-                if (connection.getState() == ConnectionState.CONNECTED) {
+                if (owner.getState() == ConnectionState.CONNECTED
+                        && channelNameToChannelMap.get(channel.getName()) == channel) {
                     try {
-                        final String message = channel.toSubscribeMessage();
-                        connection.sendMessage(message);
-                        channel.updateState(ChannelState.SUBSCRIBE_SENT);
+                        final String message = toSubscribeMessage(channel, owner);
+                        owner.sendMessage(message);
+                        // still subscribed while another of its connections
+                        // is up; after a full outage it subscribes afresh
+                        if (!channel.isSubscribed() || !connectedElsewhere(channel.getName(), owner)) {
+                            channel.updateState(ChannelState.SUBSCRIBE_SENT);
+                        }
                     } catch (final AuthorizationFailureException e) {
                         handleAuthenticationFailure(channel, e);
                     }
@@ -157,16 +251,39 @@ public class ChannelManager implements ConnectionEventListener {
         });
     }
 
-    private void sendUnsubscribeMessage(final InternalChannel channel) {
+    private void sendUnsubscribeMessage(final InternalChannel channel, final InternalConnection owner) {
         factory.queueOnEventThread(new Runnable() {
             @Override
             public void run() {
-                connection.sendMessage(channel.toUnsubscribeMessage());
+                owner.sendMessage(channel.toUnsubscribeMessage());
                 channel.updateState(ChannelState.UNSUBSCRIBED);
             }
         });
     }
 
+    private boolean connectedElsewhere(final String channelName, final InternalConnection owner) {
+        for (final InternalConnection other : connectionsFor(channelName)) {
+            if (other != owner && other.getState() == ConnectionState.CONNECTED) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<InternalConnection> connectionsFor(final String channelName) {
+        if (connection instanceof CompositeConnection) {
+            return ((CompositeConnection)connection).connectionsFor(channelName);
+        }
+        return Collections.singletonList(connection);
+    }
+
+    private String toSubscribeMessage(final InternalChannel channel, final InternalConnection owner) {
+        if (connection instanceof CompositeConnection) {
+            return ((CompositeConnection)connection).toSubscribeMessage(owner, channel);
+        }
+        return channel.toSubscribeMessage();
+    }
+
     private void handleAuthenticationFailure(final InternalChannel channel, final Exception e) {
 
         channelNameToChannelMap.remove(channel.getName());
@@ -0,0 +1,130 @@
+package com.pusher.client.channel.impl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import com.pusher.client.channel.BufferOverflowPolicy;
+
+/**
+ * Holds the client events triggered on a channel while it can't send them,
+ * e.g. during a reconnection, until the channel is subscribed again. Events
+ * older than the maximum age are dropped rather than sent late.
+ *
+ * Not thread safe: the channel owning it guards it.
+ */
+public class ClientEventBuffer {
+    private static final Logger log = Logger.getLogger(ClientEventBuffer.class.getName());
+
+    private final int capacity;
+    private final long maxAgeNanos;
+    private final BufferOverflowPolicy overflowPolicy;
+    private final ArrayDeque<Entry> entries = new ArrayDeque<Entry>();
+
+    /**
+     * @param capacity the number of events to hold, at least 1
+     * @param maxAgeNanos how long an event may wait to be sent, or 0 for no
+     *            limit
+     * @param overflowPolicy what to do with an event when the buffer is full
+     */
+    public ClientEventBuffer(final int capacity, final long maxAgeNanos, final BufferOverflowPolicy overflowPolicy) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1, got " + capacity);
+        }
+        if (maxAgeNanos < 0) {
+            throw new IllegalArgumentException("maxAgeNanos must not be negative");
+        }
+        if (overflowPolicy == null) {
+            throw new IllegalArgumentException("overflowPolicy must not be null");
+        }
+        this.capacity = capacity;
+        this.maxAgeNanos = maxAgeNanos;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * @param message the encoded client event
+     * @param now the current {@link System#nanoTime()}
+     * @return false if the event was rejected because the buffer is full
+     */
+    boolean offer(final String message, final long now) {
+        expire(now);
+        if (entries.size() == capacity) {
+            switch (overflowPolicy) {
+            case DROP_OLDEST:
+                entries.poll();
+                log.fine("Client event buffer full, dropped its oldest event");
+                break;
+            case DROP_NEWEST:
+                log.fine("Client event buffer full, dropped the new event");
+                return true;
+            default:
+                return false;
+            }
+        }
+        entries.add(new Entry(message, now));
+        return true;
+    }
+
+    /**
+     * Puts back events which were triggered before those already held, e.g.
+     * those the rate limit held back when the channel stopped being
+     * subscribed, so that they are sent first. Being the oldest, they are
+     * the ones dropped if there isn't room for all of them.
+     *
+     * @param messages the encoded client events, oldest first
+     * @param now the current {@link System#nanoTime()}
+     */
+    void requeue(final List<String> messages, final long now) {
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            entries.addFirst(new Entry(messages.get(i), now));
+        }
+        while (entries.size() > capacity) {
+            entries.poll();
+            log.fine("Client event buffer full, dropped its oldest event");
+        }
+    }
+
+    /**
+     * Removes the events that are still fresh enough to send, in the order
+     * they were triggered, and drops the rest.
+     */
+    List<String> drain(final long now) {
+        expire(now);
+        final List<String> messages = new ArrayList<String>(entries.size());
+        for (final Entry entry : entries) {
+            messages.add(entry.message);
+        }
+        entries.clear();
+        return messages;
+    }
+
+    void clear() {
+        entries.clear();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private void expire(final long now) {
+        if (maxAgeNanos == 0) {
+            return;
+        }
+        while (!entries.isEmpty() && now - entries.peek().queuedAt > maxAgeNanos) {
+            entries.poll();
+            log.fine("Dropped a client event which waited too long to be sent");
+        }
+    }
+
+    private static class Entry {
+        final String message;
+        final long queuedAt;
+
+        Entry(final String message, final long queuedAt) {
+            this.message = message;
+            this.queuedAt = queuedAt;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.pusher.client.channel.impl;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import com.pusher.client.connection.ConnectionState;
+import com.pusher.client.connection.impl.InternalConnection;
+import com.pusher.client.util.Factory;
+
+/**
+ * Keeps the client events of a client under a rate with a token bucket, as
+ * Pusher closes connections which send client events too fast. Events are
+ * sent straight away while there are tokens. Once they run out, events wait
+ * for the bucket to refill, and only the latest one of each event name on a
+ * channel is kept: a newer cursor position or typing indicator replaces the
+ * one still waiting, in its place in the queue, rather than being sent after
+ * it.
+ *
+ * Waiting events are only sent while their connection is connected. Those
+ * of a channel which is no longer subscribed are withdrawn by the channel.
+ */
+public class ClientEventLimiter {
+    private static final Logger log = Logger.getLogger(ClientEventLimiter.class.getName());
+
+    private final Factory factory;
+    private final double tokensPerNano;
+    private final double burst;
+
+    // guarded by this
+    private final Map<Object, Pending> pending = new LinkedHashMap<Object, Pending>();
+    private double tokens;
+    private long refilledAt;
+    private boolean drainScheduled;
+
+    /**
+     * @param eventsPerSecond the sustained rate of client events
+     * @param burst the number of client events which can be sent at once
+     *            after a quiet period, at least 1
+     */
+    public ClientEventLimiter(final double eventsPerSecond, final int burst, final Factory factory) {
+        this(eventsPerSecond, burst, factory, System.nanoTime());
+    }
+
+    ClientEventLimiter(final double eventsPerSecond, final int burst, final Factory factory, final long now) {
+        if (eventsPerSecond <= 0) {
+            throw new IllegalArgumentException("eventsPerSecond must be positive, got " + eventsPerSecond);
+        }
+        if (burst < 1) {
+            throw new IllegalArgumentException("burst must be at least 1, got " + burst);
+        }
+        this.factory = factory;
+        this.tokensPerNano = eventsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = burst;
+        this.tokens = burst;
+        this.refilledAt = now;
+    }
+
+    /**
+     * Sends a client event now, or once the rate allows.
+     *
+     * @param owner the channel the event is triggered on, which can
+     *            {@link #withdraw(Object)} it while it waits
+     * @param key what identifies the events which replace each other while
+     *            waiting, e.g. the channel and event name, or null if the
+     *            event must not be replaced
+     */
+    public void send(final InternalConnection connection, final Object owner, final String key,
+            final String message) {
+        send(connection, owner, key, message, System.nanoTime());
+    }
+
+    /**
+     * Takes back the events of a channel which are still waiting, e.g.
+     * because the channel is no longer subscribed.
+     *
+     * @return the events withdrawn, in the order they would have been sent
+     */
+    public synchronized List<String> withdraw(final Object owner) {
+        final List<String> messages = new ArrayList<String>();
+        final Iterator<Pending> waiting = pending.values().iterator();
+        while (waiting.hasNext()) {
+            final Pending next = waiting.next();
+            if (next.owner == owner) {
+                waiting.remove();
+                messages.add(next.message);
+            }
+        }
+        return messages;
+    }
+
+    synchronized void send(final InternalConnection connection, final Object owner, final String key,
+            final String message, final long now) {
+        refill(now);
+        if (pending.isEmpty() && tokens >= 1) {
+            tokens--;
+            connection.sendMessage(message);
+            return;
+        }
+
+        final Pending replaced = pending.put(key != null ? key : new Object(), new Pending(connection, owner, message));
+        if (replaced != null) {
+            log.fine("Client event rate limited, replaced the waiting [" + key + "] event");
+        }
+        scheduleDrain();
+    }
+
+    synchronized void drain(final long now) {
+        drainScheduled = false;
+        refill(now);
+        boolean stillSendable = false;
+        final Iterator<Pending> waiting = pending.values().iterator();
+        while (waiting.hasNext()) {
+            final Pending next = waiting.next();
+            if (next.connection.getState() != ConnectionState.CONNECTED) {
+                // left for its channel to withdraw once it is resubscribed
+                continue;
+            }
+            if (tokens < 1) {
+                stillSendable = true;
+                break;
+            }
+            waiting.remove();
+            tokens--;
+            next.connection.sendMessage(next.message);
+        }
+        if (stillSendable) {
+            scheduleDrain();
+        }
+    }
+
+    synchronized int waiting() {
+        return pending.size();
+    }
+
+    private void refill(final long now) {
+        tokens = Math.min(burst, tokens + (now - refilledAt) * tokensPerNano);
+        refilledAt = now;
+    }
+
+    private void scheduleDrain() {
+        if (drainScheduled) {
+            return;
+        }
+        drainScheduled = true;
+        final long delay = (long)Math.ceil(Math.max(0, 1 - tokens) / tokensPerNano);
+        factory.getTimers().schedule(new Runnable() {
+            @Override
+            public void run() {
+                drain(System.nanoTime());
+            }
+        }, delay, TimeUnit.NANOSECONDS);
+    }
+
+    private static class Pending {
+        final InternalConnection connection;
+        final Object owner;
+        final String message;
+
+        Pending(final InternalConnection connection, final Object owner, final String message) {
+            this.connection = connection;
+            this.owner = owner;
+            this.message = message;
+        }
+    }
+}
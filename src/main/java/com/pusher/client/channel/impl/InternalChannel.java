@@ -9,11 +9,17 @@ public interface InternalChannel extends Channel, Comparable<InternalChannel> {
 
     String toSubscribeMessage();
 
+    /**
+     * Builds the message to subscribe to this channel on a given socket,
+     * authorized for that socket if the channel needs authorizing.
+     */
+    String toSubscribeMessage(String socketId);
+
     String toUnsubscribeMessage();
 
-    PusherEvent prepareEvent(String event, String message);
+    PusherEvent prepareEvent(PusherEvent event);
 
-    void onMessage(String event, String message);
+    void onMessage(PusherEvent event);
 
     void updateState(ChannelState state);
 
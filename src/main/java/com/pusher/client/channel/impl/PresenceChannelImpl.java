@@ -1,13 +1,11 @@
 package com.pusher.client.channel.impl;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonSyntaxException;
-import com.google.gson.annotations.SerializedName;
 import com.pusher.client.AuthorizationFailureException;
 import com.pusher.client.Authorizer;
 import com.pusher.client.channel.ChannelEventListener;
 import com.pusher.client.channel.PresenceChannel;
 import com.pusher.client.channel.PresenceChannelEventListener;
+import com.pusher.client.channel.PusherEvent;
 import com.pusher.client.channel.SubscriptionEventListener;
 import com.pusher.client.channel.User;
 import com.pusher.client.connection.impl.InternalConnection;
@@ -24,7 +22,6 @@ public class PresenceChannelImpl extends PrivateChannelImpl implements PresenceC
 
     private static final String MEMBER_ADDED_EVENT = "pusher_internal:member_added";
     private static final String MEMBER_REMOVED_EVENT = "pusher_internal:member_removed";
-    private static final Gson GSON = new Gson();
 
     private final Map<String, User> idToUserMap = Collections.synchronizedMap(new LinkedHashMap<String, User>());
 
@@ -50,24 +47,25 @@ public class PresenceChannelImpl extends PrivateChannelImpl implements PresenceC
     /* Base class overrides */
 
     @Override
-    public void onMessage(final String event, final String message) {
+    public void onMessage(final PusherEvent event) {
 
-        super.onMessage(event, message);
+        super.onMessage(event);
 
-        if (event.equals(SUBSCRIPTION_SUCCESS_EVENT)) {
-            handleSubscriptionSuccessfulMessage(message);
+        final String eventName = event.getEventName();
+        if (eventName.equals(SUBSCRIPTION_SUCCESS_EVENT)) {
+            handleSubscriptionSuccessfulMessage(event);
         }
-        else if (event.equals(MEMBER_ADDED_EVENT)) {
-            handleMemberAddedEvent(message);
+        else if (eventName.equals(MEMBER_ADDED_EVENT)) {
+            handleMemberAddedEvent(event);
         }
-        else if (event.equals(MEMBER_REMOVED_EVENT)) {
-            handleMemberRemovedEvent(message);
+        else if (eventName.equals(MEMBER_REMOVED_EVENT)) {
+            handleMemberRemovedEvent(event);
         }
     }
 
     @Override
-    public String toSubscribeMessage() {
-        String msg = super.toSubscribeMessage();
+    public String toSubscribeMessage(final String socketId) {
+        String msg = super.toSubscribeMessage(socketId);
         myUserID = extractUserIdFromChannelData(channelData);
         return msg;
     }
@@ -94,11 +92,11 @@ public class PresenceChannelImpl extends PrivateChannelImpl implements PresenceC
     }
 
     @SuppressWarnings({ "rawtypes", "unchecked" })
-    private void handleSubscriptionSuccessfulMessage(final String message) {
+    private void handleSubscriptionSuccessfulMessage(final PusherEvent event) {
         final ChannelEventListener listener = getEventListener();
 
         // extract data from the JSON message
-        final PresenceData presenceData = extractPresenceDataFrom(message);
+        final Map<String, Object> presenceData = extractPresenceDataFrom(event);
         if (presenceData == null) {
             if (listener != null) {
                 listener.onError(
@@ -109,14 +107,17 @@ public class PresenceChannelImpl extends PrivateChannelImpl implements PresenceC
             return;
         }
 
-        final List<String> ids = presenceData.ids;
-        final Map<String, Object> hash = presenceData.hash;
+        final List<Object> ids = (List<Object>)presenceData.get("ids");
+        final Map<String, Object> hash = (Map<String, Object>)presenceData.get("hash");
 
+        // a fresh snapshot, e.g. after a reconnection: drop those who left
+        idToUserMap.clear();
         if (ids != null && !ids.isEmpty()) {
             // build the collection of Users
-            for (final String id : ids) {
-                final String userData = hash.get(id) != null ? GSON.toJson(hash.get(id)) : null;
-                final User user = new User(id, userData);
+            for (final Object rawId : ids) {
+                final String id = idOf(rawId);
+                final String userData = hash.get(id) != null ? codec.encode(hash.get(id)) : null;
+                final User user = new User(id, userData, codec);
                 idToUserMap.put(id, user);
             }
         }
@@ -127,16 +128,14 @@ public class PresenceChannelImpl extends PrivateChannelImpl implements PresenceC
         }
     }
 
-    @SuppressWarnings("rawtypes")
-    private void handleMemberAddedEvent(final String message) {
-        final String dataString = extractDataStringFrom(message);
-        MemberData memberData = GSON.fromJson(dataString, MemberData.class);
-
+    private void handleMemberAddedEvent(final PusherEvent event) {
+        final Map<String, Object> memberData = codec.decodeObject(event.getData());
 
-        final String id = memberData.userId;
-        final String userData = memberData.userInfo!= null ? GSON.toJson(memberData.userInfo) : null;
+        final String id = idOf(memberData.get("user_id"));
+        final Object userInfo = memberData.get("user_info");
+        final String userData = userInfo != null ? codec.encode(userInfo) : null;
 
-        final User user = new User(id, userData);
+        final User user = new User(id, userData, codec);
         idToUserMap.put(id, user);
 
         final ChannelEventListener listener = getEventListener();
@@ -146,13 +145,11 @@ public class PresenceChannelImpl extends PrivateChannelImpl implements PresenceC
         }
     }
 
-    @SuppressWarnings("rawtypes")
-    private void handleMemberRemovedEvent(final String message) {
+    private void handleMemberRemovedEvent(final PusherEvent event) {
 
-        final String dataString = extractDataStringFrom(message);
-        final MemberData memberData = GSON.fromJson(dataString, MemberData.class);
+        final Map<String, Object> memberData = codec.decodeObject(event.getData());
 
-        final User user = idToUserMap.remove(memberData.userId);
+        final User user = idToUserMap.remove(idOf(memberData.get("user_id")));
 
         final ChannelEventListener listener = getEventListener();
         if (listener != null) {
@@ -161,24 +158,31 @@ public class PresenceChannelImpl extends PrivateChannelImpl implements PresenceC
         }
     }
 
-    @SuppressWarnings("rawtypes")
-    private static String extractDataStringFrom(final String message) {
-        final Map jsonObject = GSON.fromJson(message, Map.class);
-        return  (String) jsonObject.get("data");
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> extractPresenceDataFrom(final PusherEvent event) {
+        return (Map<String, Object>)codec.decodeObject(event.getData()).get("presence");
     }
 
-    @SuppressWarnings("rawtypes")
-    private static PresenceData extractPresenceDataFrom(final String message) {
-        final String dataString = extractDataStringFrom(message);
-        return GSON.fromJson(dataString, Presence.class).presence;
+    /**
+     * User ids are strings in the protocol, but generic decoding turns any
+     * numeric ones into doubles; write those back without a fraction.
+     */
+    private static String idOf(final Object id) {
+        if (id instanceof Number) {
+            final double value = ((Number)id).doubleValue();
+            if (value == Math.rint(value) && !Double.isInfinite(value)) {
+                return String.valueOf((long)value);
+            }
+        }
+        return id == null ? null : String.valueOf(id);
     }
 
     @SuppressWarnings("rawtypes")
     private String extractUserIdFromChannelData(final String channelData) {
         final Map channelDataMap;
         try {
-            channelDataMap = GSON.fromJson((String)channelData, Map.class);
-        } catch (final JsonSyntaxException e) {
+            channelDataMap = codec.decodeObject(channelData);
+        } catch (final IllegalArgumentException e) {
             throw new AuthorizationFailureException("Invalid response from Authorizer: unable to parse channel_data object: " + channelData, e);
         }
         Object maybeUserId;
@@ -191,28 +195,6 @@ public class PresenceChannelImpl extends PrivateChannelImpl implements PresenceC
             throw new AuthorizationFailureException("Invalid response from Authorizer: no user_id key in channel_data object: " + channelData);
         }
         // user_id can be a string or an integer in the Channels websocket protocol
-        return String.valueOf(maybeUserId);
+        return idOf(maybeUserId);
     }
-
-    private class MemberData {
-        @SerializedName("user_id")
-        public String userId;
-        @SerializedName("user_info")
-        public Object userInfo;
-    }
-
-    private class PresenceData {
-        @SerializedName("count")
-        public Integer count;
-        @SerializedName("ids")
-        public List<String> ids;
-        @SerializedName("hash")
-        public Map<String, Object> hash;
-    }
-
-    private class Presence {
-        @SerializedName("presence")
-        public PresenceData presence;
-    }
-
 }
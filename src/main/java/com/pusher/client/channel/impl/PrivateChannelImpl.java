@@ -1,10 +1,8 @@
 package com.pusher.client.channel.impl;
 
-import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-
-import com.google.gson.Gson;
-import com.google.gson.JsonSyntaxException;
+import java.util.logging.Logger;
 
 import com.pusher.client.AuthorizationFailureException;
 import com.pusher.client.Authorizer;
@@ -15,13 +13,18 @@ import com.pusher.client.channel.SubscriptionEventListener;
 import com.pusher.client.connection.ConnectionState;
 import com.pusher.client.connection.impl.InternalConnection;
 import com.pusher.client.util.Factory;
+import com.pusher.client.util.internal.OutboundMessageEncoder;
 
 public class PrivateChannelImpl extends ChannelImpl implements PrivateChannel {
+    private static final Logger log = Logger.getLogger(PrivateChannelImpl.class.getName());
 
-    private static final Gson GSON = new Gson();
     private static final String CLIENT_EVENT_PREFIX = "client-";
     private final InternalConnection connection;
     private final Authorizer authorizer;
+    // holds client events while the channel is being resubscribed, if enabled
+    private final ClientEventBuffer outbound;
+    // keeps the client events of the client under a rate, if enabled
+    private final ClientEventLimiter limiter;
 
     protected String channelData;
 
@@ -30,12 +33,13 @@ public class PrivateChannelImpl extends ChannelImpl implements PrivateChannel {
         super(channelName, factory);
         this.connection = connection;
         this.authorizer = authorizer;
+        this.outbound = factory.newClientEventBuffer();
+        this.limiter = factory.getClientEventLimiter();
     }
 
     /* PrivateChannel implementation */
 
     @Override
-    @SuppressWarnings("rawtypes")
     public void trigger(final String eventName, final String data) {
 
         if (eventName == null || !eventName.startsWith(CLIENT_EVENT_PREFIX)) {
@@ -43,6 +47,11 @@ public class PrivateChannelImpl extends ChannelImpl implements PrivateChannel {
                     + ": client events must start with \"client-\"");
         }
 
+        if (outbound != null) {
+            triggerOrBuffer(eventName, OutboundMessageEncoder.clientEvent(eventName, name, data));
+            return;
+        }
+
         if (state != ChannelState.SUBSCRIBED) {
             throw new IllegalStateException("Cannot trigger event " + eventName + " because channel " + name
                     + " is in " + state.toString() + " state");
@@ -53,24 +62,84 @@ public class PrivateChannelImpl extends ChannelImpl implements PrivateChannel {
                     + connection.getState().toString() + " state");
         }
 
-        try {
+        sendClientEvent(eventName, OutboundMessageEncoder.clientEvent(eventName, name, data));
+    }
+
+    private void sendClientEvent(final String eventName, final String message) {
+        if (limiter != null) {
+            // channel names can't contain spaces
+            limiter.send(connection, this, eventName != null ? name + " " + eventName : null, message);
+        }
+        else {
+            connection.sendMessage(message);
+        }
+    }
 
-            final Map<Object, Object> jsonPayload = new LinkedHashMap<Object, Object>();
-            jsonPayload.put("event", eventName);
-            jsonPayload.put("channel", name);
-            jsonPayload.put("data", data);
+    private void triggerOrBuffer(final String eventName, final String message) {
+        synchronized (outbound) {
+            if (state == ChannelState.SUBSCRIBED && connection.getState() == ConnectionState.CONNECTED) {
+                sendClientEvent(eventName, message);
+                return;
+            }
+            if (state != ChannelState.SUBSCRIBED && state != ChannelState.SUBSCRIBE_SENT) {
+                throw new IllegalStateException("Cannot trigger event " + eventName + " because channel " + name
+                        + " is in " + state.toString() + " state");
+            }
+            if (!outbound.offer(message, System.nanoTime())) {
+                throw new IllegalStateException("Cannot trigger event " + eventName
+                        + " because the client event buffer of channel " + name + " is full");
+            }
+        }
+    }
 
-            final String jsonMessage = GSON.toJson(jsonPayload);
-            connection.sendMessage(jsonMessage);
+    /* Base class overrides */
+
+    @Override
+    public void updateState(final ChannelState state) {
+        super.updateState(state);
 
+        if (limiter != null && state != ChannelState.SUBSCRIBED) {
+            withdrawRateLimitedEvents(state);
         }
-        catch (final JsonSyntaxException e) {
-            throw new IllegalArgumentException("Cannot trigger event " + eventName + " because \"" + data
-                    + "\" could not be parsed as valid JSON");
+        if (outbound == null) {
+            return;
+        }
+        if (state == ChannelState.SUBSCRIBED) {
+            // sent while holding the buffer, so new events queue up behind
+            synchronized (outbound) {
+                for (final String message : outbound.drain(System.nanoTime())) {
+                    sendClientEvent(null, message);
+                }
+            }
+        }
+        else if (state == ChannelState.UNSUBSCRIBED || state == ChannelState.FAILED) {
+            synchronized (outbound) {
+                outbound.clear();
+            }
         }
     }
 
-    /* Base class overrides */
+    /**
+     * Takes back the client events still waiting for the rate limit, which
+     * can't be sent until the channel is subscribed again: into the buffer
+     * while it is being resubscribed, if there is one, otherwise they are
+     * dropped.
+     */
+    private void withdrawRateLimitedEvents(final ChannelState state) {
+        final List<String> withdrawn = limiter.withdraw(this);
+        if (withdrawn.isEmpty()) {
+            return;
+        }
+        if (outbound != null && state == ChannelState.SUBSCRIBE_SENT) {
+            synchronized (outbound) {
+                outbound.requeue(withdrawn, System.nanoTime());
+            }
+        }
+        else {
+            log.fine("Dropped " + withdrawn.size() + " rate limited client events of channel " + name
+                    + " which is now " + state);
+        }
+    }
 
     @Override
     public void bind(final String eventName, final SubscriptionEventListener listener) {
@@ -84,30 +153,22 @@ public class PrivateChannelImpl extends ChannelImpl implements PrivateChannel {
     }
 
     @Override
-    @SuppressWarnings("rawtypes")
     public String toSubscribeMessage() {
+        return toSubscribeMessage(connection.getSocketId());
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public String toSubscribeMessage(final String socketId) {
 
-        final String authResponse = getAuthResponse();
+        final String authResponse = getAuthResponse(socketId);
 
         try {
-            final Map authResponseMap = GSON.fromJson(authResponse, Map.class);
+            final Map authResponseMap = codec.decodeObject(authResponse);
             final String authKey = (String)authResponseMap.get("auth");
             channelData = (String)authResponseMap.get("channel_data");
 
-            final Map<Object, Object> jsonObject = new LinkedHashMap<Object, Object>();
-            jsonObject.put("event", "pusher:subscribe");
-
-            final Map<Object, Object> dataMap = new LinkedHashMap<Object, Object>();
-            dataMap.put("channel", name);
-            dataMap.put("auth", authKey);
-            if (channelData != null) {
-                dataMap.put("channel_data", channelData);
-            }
-
-            jsonObject.put("data", dataMap);
-
-            final String json = GSON.toJson(jsonObject);
-            return json;
+            return OutboundMessageEncoder.subscribe(name, authKey, channelData);
         }
         catch (final Exception e) {
             throw new AuthorizationFailureException("Unable to parse response from Authorizer: " + authResponse, e);
@@ -125,8 +186,7 @@ public class PrivateChannelImpl extends ChannelImpl implements PrivateChannel {
     /**
      * Protected access because this is also used by PresenceChannelImpl.
      */
-    protected String getAuthResponse() {
-        final String socketId = connection.getSocketId();
+    protected String getAuthResponse(final String socketId) {
         return authorizer.authorize(getName(), socketId);
     }
 
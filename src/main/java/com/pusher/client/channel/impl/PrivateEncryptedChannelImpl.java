@@ -16,10 +16,9 @@ import com.pusher.client.crypto.nacl.SecretBoxOpener;
 import com.pusher.client.crypto.nacl.SecretBoxOpenerFactory;
 import com.pusher.client.util.Factory;
 import com.pusher.client.util.internal.Base64;
+import com.pusher.client.util.internal.OutboundMessageEncoder;
 
-import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Set;
 
 public class PrivateEncryptedChannelImpl extends ChannelImpl implements PrivateEncryptedChannel {
 
@@ -70,25 +69,20 @@ public class PrivateEncryptedChannelImpl extends ChannelImpl implements PrivateE
 
     @Override
     public String toSubscribeMessage() {
-        String authKey = authenticate();
-
-        // create the data part
-        final Map<Object, Object> dataMap = new LinkedHashMap<>();
-        dataMap.put("channel", name);
-        dataMap.put("auth", authKey);
+        return toSubscribeMessage(connection.getSocketId());
+    }
 
-        // create the wrapper part
-        final Map<Object, Object> jsonObject = new LinkedHashMap<>();
-        jsonObject.put("event", "pusher:subscribe");
-        jsonObject.put("data", dataMap);
+    @Override
+    public String toSubscribeMessage(final String socketId) {
+        String authKey = authenticate(socketId);
 
-        return GSON.toJson(jsonObject);
+        return OutboundMessageEncoder.subscribe(name, authKey, null);
     }
 
-    private String authenticate() {
+    private String authenticate(final String socketId) {
         try {
             @SuppressWarnings("rawtypes") // anything goes in JS
-            final Map authResponse = GSON.fromJson(getAuthResponse(), Map.class);
+            final Map authResponse = codec.decodeObject(getAuthResponse(socketId));
 
             final String auth = (String) authResponse.get("auth");
             final String sharedSecret = (String) authResponse.get("shared_secret");
@@ -128,22 +122,22 @@ public class PrivateEncryptedChannelImpl extends ChannelImpl implements PrivateE
     }
 
     @Override
-    public PusherEvent prepareEvent(String event, String message) {
+    public PusherEvent prepareEvent(PusherEvent event) {
 
         try {
-            return decryptMessage(message);
+            return decryptMessage(event);
         } catch (AuthenticityException e1) {
 
             // retry once only.
             disposeSecretBoxOpener();
-            authenticate();
+            authenticate(connection.getSocketId());
 
             try {
-                return decryptMessage(message);
+                return decryptMessage(event);
             } catch (AuthenticityException e2) {
                 // deliberately not destroying the secretBoxOpener so the next message
                 // has an opportunity to fetch a new key and decrypt
-                notifyListenersOfDecryptFailure(event, "Failed to decrypt message.");
+                notifyListenersOfDecryptFailure(event.getEventName(), "Failed to decrypt message.");
             }
         }
 
@@ -151,18 +145,27 @@ public class PrivateEncryptedChannelImpl extends ChannelImpl implements PrivateE
     }
 
     private void notifyListenersOfDecryptFailure(final String event, final String reason) {
-        Set<SubscriptionEventListener> listeners = getInterestedListeners(event);
+        SubscriptionEventListener[] listeners = getInterestedListeners(event);
         if (listeners != null) {
             for (SubscriptionEventListener listener : listeners) {
-                ((PrivateEncryptedChannelEventListener)listener).onDecryptionFailure(
-                        event, reason);
+                if (listener instanceof PrivateEncryptedChannelEventListener) {
+                    ((PrivateEncryptedChannelEventListener)listener).onDecryptionFailure(
+                            event, reason);
+                } else {
+                    listener.onError(reason, null);
+                }
             }
         }
     }
 
-    private class EncryptedReceivedData {
-        String nonce;
-        String ciphertext;
+    private static class EncryptedReceivedData {
+        final String nonce;
+        final String ciphertext;
+
+        EncryptedReceivedData(final Map<String, Object> data) {
+            nonce = (String)data.get("nonce");
+            ciphertext = (String)data.get("ciphertext");
+        }
 
         public byte[] getNonce() {
             return Base64.decode(nonce);
@@ -173,21 +176,16 @@ public class PrivateEncryptedChannelImpl extends ChannelImpl implements PrivateE
         }
     }
 
-    private PusherEvent decryptMessage(String message) {
-
-        Map<String, Object> receivedMessage =
-                GSON.<Map<String, Object>>fromJson(message, Map.class);
+    private PusherEvent decryptMessage(PusherEvent event) {
 
         final EncryptedReceivedData encryptedReceivedData =
-                GSON.fromJson((String)receivedMessage.get("data"), EncryptedReceivedData.class);
+                new EncryptedReceivedData(codec.decodeObject(event.getData()));
 
         String decryptedData = secretBoxOpener.open(
                 encryptedReceivedData.getCiphertext(),
                 encryptedReceivedData.getNonce());
 
-        receivedMessage.put("data", decryptedData);
-
-        return new PusherEvent(receivedMessage);
+        return event.withData(decryptedData);
     }
 
     private void disposeSecretBoxOpener() {
@@ -203,8 +201,7 @@ public class PrivateEncryptedChannelImpl extends ChannelImpl implements PrivateE
                 disposeSecretBoxOpenerOnDisconnectedListener);
     }
 
-    private String getAuthResponse() {
-        final String socketId = connection.getSocketId();
+    private String getAuthResponse(final String socketId) {
         return authorizer.authorize(getName(), socketId);
     }
 
@@ -46,4 +46,15 @@ public interface Connection {
      * @return The id.
      */
     String getSocketId();
+
+    /**
+     * Gets the round-trip times measured by pinging Pusher over this
+     * connection.
+     *
+     * @return A snapshot of the most recent round-trip times, empty if the
+     *         connection does not measure them.
+     */
+    default LatencyStats getLatencyStats() {
+        return new LatencyStats(new long[0], 0);
+    }
 }
@@ -0,0 +1,52 @@
+package com.pusher.client.connection;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential backoff with "decorrelated jitter": each delay is picked at
+ * random between the base delay and three times the previous one, capped at
+ * a maximum. Clients that lost their connections at the same moment spread
+ * their reconnection attempts out instead of retrying in lock-step, and the
+ * first retry can come well within a second.
+ */
+public class DecorrelatedJitterBackoff implements ReconnectionPolicy {
+
+    private static final long DEFAULT_BASE_DELAY = 250;
+    private static final long DEFAULT_MAX_DELAY = 30000;
+
+    private final long baseDelay;
+    private final long maxDelay;
+
+    /**
+     * Creates a policy which starts at 250ms and waits at most 30 seconds.
+     */
+    public DecorrelatedJitterBackoff() {
+        this(DEFAULT_BASE_DELAY, DEFAULT_MAX_DELAY);
+    }
+
+    /**
+     * @param baseDelay
+     *            The shortest delay in milliseconds, at least 1.
+     * @param maxDelay
+     *            The longest delay in milliseconds, at least baseDelay.
+     */
+    public DecorrelatedJitterBackoff(final long baseDelay, final long maxDelay) {
+        if (baseDelay < 1) {
+            throw new IllegalArgumentException("Base delay must be at least 1ms, got " + baseDelay);
+        }
+        if (maxDelay < baseDelay) {
+            throw new IllegalArgumentException("Max delay must be at least the base delay, got " + maxDelay);
+        }
+        this.baseDelay = baseDelay;
+        this.maxDelay = maxDelay;
+    }
+
+    @Override
+    public long getReconnectionDelay(final int attempt, final long previousDelay) {
+        final long upper = Math.min(maxDelay, Math.max(baseDelay, previousDelay) * 3);
+        if (upper <= baseDelay) {
+            return baseDelay;
+        }
+        return ThreadLocalRandom.current().nextLong(baseDelay, upper + 1);
+    }
+}
@@ -0,0 +1,33 @@
+package com.pusher.client.connection;
+
+/**
+ * Decides what happens to an event received from Pusher while the inbound
+ * queue of a client is full, i.e. while its listeners are falling behind.
+ *
+ * @see com.pusher.client.PusherOptions#setInboundQueue(int, InboundOverflowPolicy)
+ */
+public enum InboundOverflowPolicy {
+
+    /**
+     * Stop reading from the socket until there is room, so that Pusher's
+     * sending is slowed down by TCP flow control. Nothing is dropped, but
+     * pings go unanswered while the reader waits.
+     */
+    BLOCK,
+
+    /**
+     * Drop the event which has waited longest to make room for the new one.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Drop the new event, keeping those already waiting.
+     */
+    DROP_NEWEST,
+
+    /**
+     * Drop the new event and close the connection with an error, so that it
+     * is reconnected as after any other failure.
+     */
+    FAIL_CONNECTION
+}
@@ -0,0 +1,106 @@
+package com.pusher.client.connection;
+
+import java.util.Arrays;
+
+/**
+ * A snapshot of the round-trip times measured between a ping sent to Pusher
+ * and the matching pong, over a window of the most recent measurements.
+ *
+ * Pings are sent when the connection is idle and, if enabled with
+ * {@link com.pusher.client.PusherOptions#setLatencyProbeInterval(long)},
+ * periodically regardless of activity.
+ */
+public class LatencyStats {
+
+    private final long[] sortedNanos;
+    private final long lastNanos;
+
+    /**
+     * Used within the library to create a snapshot. Not to be used as part of
+     * the API.
+     *
+     * @param samplesNanos The round-trip times in the window, in nanoseconds.
+     * @param lastNanos The most recent round-trip time, in nanoseconds.
+     */
+    public LatencyStats(final long[] samplesNanos, final long lastNanos) {
+        this.sortedNanos = samplesNanos.clone();
+        Arrays.sort(sortedNanos);
+        this.lastNanos = lastNanos;
+    }
+
+    /**
+     * @return The number of round trips in the window.
+     */
+    public int getSampleCount() {
+        return sortedNanos.length;
+    }
+
+    /**
+     * @return The most recent round-trip time in milliseconds, or 0 if there
+     *         are no samples.
+     */
+    public double getLastMillis() {
+        return sortedNanos.length == 0 ? 0 : toMillis(lastNanos);
+    }
+
+    /**
+     * @return The shortest round-trip time in the window in milliseconds, or
+     *         0 if there are no samples.
+     */
+    public double getMinMillis() {
+        return sortedNanos.length == 0 ? 0 : toMillis(sortedNanos[0]);
+    }
+
+    /**
+     * @return The longest round-trip time in the window in milliseconds, or 0
+     *         if there are no samples.
+     */
+    public double getMaxMillis() {
+        return sortedNanos.length == 0 ? 0 : toMillis(sortedNanos[sortedNanos.length - 1]);
+    }
+
+    /**
+     * @return The mean round-trip time in the window in milliseconds, or 0 if
+     *         there are no samples.
+     */
+    public double getMeanMillis() {
+        if (sortedNanos.length == 0) {
+            return 0;
+        }
+        double total = 0;
+        for (final long sample : sortedNanos) {
+            total += sample;
+        }
+        return toMillis(total / sortedNanos.length);
+    }
+
+    /**
+     * @param percentile
+     *            The percentile, between 0 and 100, e.g. 99 for the 99th
+     *            percentile.
+     * @return The round-trip time in milliseconds which that percentage of the
+     *         round trips in the window didn't exceed, or 0 if there are no
+     *         samples.
+     */
+    public double getPercentileMillis(final double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be between 0 and 100, got " + percentile);
+        }
+        if (sortedNanos.length == 0) {
+            return 0;
+        }
+        final int rank = (int)Math.ceil(percentile / 100 * sortedNanos.length);
+        return toMillis(sortedNanos[Math.max(0, rank - 1)]);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[LatencyStats: samples=%d, last=%.1fms, p50=%.1fms, p90=%.1fms, p99=%.1fms, max=%.1fms]",
+                getSampleCount(), getLastMillis(), getPercentileMillis(50), getPercentileMillis(90),
+                getPercentileMillis(99), getMaxMillis());
+    }
+
+    private static double toMillis(final double nanos) {
+        return nanos / 1000000.0;
+    }
+}
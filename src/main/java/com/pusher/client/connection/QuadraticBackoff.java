@@ -0,0 +1,30 @@
+package com.pusher.client.connection;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Waits the square of the attempt number in seconds (1, 4, 9, .. seconds),
+ * capped at a maximum. This is the policy used unless another one is set
+ * with
+ * {@link com.pusher.client.PusherOptions#setReconnectionPolicy(ReconnectionPolicy)}.
+ */
+public class QuadraticBackoff implements ReconnectionPolicy {
+
+    private final long maxDelay;
+
+    /**
+     * @param maxDelay
+     *            The longest delay in milliseconds.
+     */
+    public QuadraticBackoff(final long maxDelay) {
+        if (maxDelay < 0) {
+            throw new IllegalArgumentException("Max delay must not be negative, got " + maxDelay);
+        }
+        this.maxDelay = maxDelay;
+    }
+
+    @Override
+    public long getReconnectionDelay(final int attempt, final long previousDelay) {
+        return Math.min(maxDelay, TimeUnit.SECONDS.toMillis((long)attempt * attempt));
+    }
+}
@@ -0,0 +1,32 @@
+package com.pusher.client.connection;
+
+/**
+ * Decides how long a {@link Connection} waits before each attempt to
+ * reconnect after the connection to Pusher was lost.
+ *
+ * <p>
+ * Set a policy with
+ * {@link com.pusher.client.PusherOptions#setReconnectionPolicy(ReconnectionPolicy)}.
+ * The number of attempts is still limited by
+ * {@link com.pusher.client.PusherOptions#setMaxReconnectionAttempts(int)}.
+ * Implementations are called when the connection closes, on the thread
+ * reading its websocket, so they should return quickly and must be thread
+ * safe if shared between clients.
+ * </p>
+ *
+ * @see DecorrelatedJitterBackoff
+ * @see QuadraticBackoff
+ */
+public interface ReconnectionPolicy {
+
+    /**
+     * @param attempt
+     *            The number of the attempt about to be made, starting at 1
+     *            after each successful connection.
+     * @param previousDelay
+     *            The delay returned for the previous attempt in milliseconds,
+     *            or 0 before the first attempt.
+     * @return The number of milliseconds to wait before the attempt.
+     */
+    long getReconnectionDelay(int attempt, long previousDelay);
+}
@@ -0,0 +1,24 @@
+package com.pusher.client.connection.impl;
+
+import java.util.List;
+
+import com.pusher.client.channel.impl.InternalChannel;
+
+/**
+ * A connection made of several connections to Pusher, each carrying some or
+ * all of the channels. The channels are subscribed on each of their
+ * connections separately as it becomes connected.
+ */
+public interface CompositeConnection extends InternalConnection {
+
+    /**
+     * @return the connections a channel is subscribed on
+     */
+    List<InternalConnection> connectionsFor(String channelName);
+
+    /**
+     * Builds the message subscribing to a channel on one of its connections,
+     * authorized for that connection if the channel is private.
+     */
+    String toSubscribeMessage(InternalConnection connection, InternalChannel channel);
+}
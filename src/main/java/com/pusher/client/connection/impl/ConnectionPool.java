@@ -0,0 +1,411 @@
+package com.pusher.client.connection.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+import com.pusher.client.PusherOptions;
+import com.pusher.client.channel.impl.ChannelManager;
+import com.pusher.client.channel.impl.InternalChannel;
+import com.pusher.client.connection.ConnectionEventListener;
+import com.pusher.client.connection.ConnectionState;
+import com.pusher.client.connection.ConnectionStateChange;
+import com.pusher.client.connection.LatencyStats;
+import com.pusher.client.util.Factory;
+import com.pusher.client.util.internal.OutboundMessageEncoder;
+
+/**
+ * Spreads the channels of a client over several connections to Pusher, so
+ * that no single socket has to carry all of their traffic. Each channel is
+ * owned by one connection, picked by consistent hashing of the channel name,
+ * which keeps most channels where they are when the pool is resized.
+ *
+ * The pool is only CONNECTED when all its connections are, and DISCONNECTED
+ * when all of them are. {@link #getSocketId()}, {@link #getLatencyStats()}
+ * and {@link #sendMessage(String)} refer to the first connection; channels
+ * use the connection that owns them.
+ */
+public class ConnectionPool implements CompositeConnection {
+    private static final Logger log = Logger.getLogger(ConnectionPool.class.getName());
+
+    private static final int POINTS_PER_CONNECTION = 160;
+
+    private final String url;
+    private final PusherOptions options;
+    private final Factory factory;
+    private final Map<ConnectionState, Set<ConnectionEventListener>> eventListeners = new ConcurrentHashMap<ConnectionState, Set<ConnectionEventListener>>();
+
+    private volatile Shard[] shards;
+    private volatile Ring ring;
+    private volatile boolean connectRequested;
+    // the state last reported to the listeners, only used on the event thread
+    private ConnectionState reportedState = ConnectionState.DISCONNECTED;
+
+    public ConnectionPool(final String url, final PusherOptions options, final int size, final Factory factory) {
+        if (size < 1) {
+            throw new IllegalArgumentException("A connection pool needs at least one connection, got " + size);
+        }
+        this.url = url;
+        this.options = options;
+        this.factory = factory;
+
+        for (final ConnectionState state : ConnectionState.values()) {
+            eventListeners.put(state, Collections.newSetFromMap(new ConcurrentHashMap<ConnectionEventListener, Boolean>()));
+        }
+
+        final Shard[] initial = new Shard[size];
+        for (int i = 0; i < size; i++) {
+            initial[i] = new Shard();
+        }
+        shards = initial;
+        ring = new Ring(size);
+    }
+
+    /**
+     * @return the number of connections in the pool
+     */
+    public int getSize() {
+        return shards.length;
+    }
+
+    /**
+     * Changes the number of connections. Only the channels owned by a
+     * connection that is added or removed move to another connection: they
+     * are unsubscribed from the old one and subscribed on the new one.
+     *
+     * @param size the number of connections, at least 1
+     */
+    public void resize(final int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("A connection pool needs at least one connection, got " + size);
+        }
+        factory.queueOnEventThread(new Runnable() {
+            @Override
+            public void run() {
+                applySize(size);
+            }
+        });
+    }
+
+    /**
+     * @return the connection which owns a channel
+     */
+    public InternalConnection connectionFor(final String channelName) {
+        return shards[ring.indexFor(channelName)].connection;
+    }
+
+    @Override
+    public List<InternalConnection> connectionsFor(final String channelName) {
+        return Collections.singletonList(connectionFor(channelName));
+    }
+
+    @Override
+    public String toSubscribeMessage(final InternalConnection connection, final InternalChannel channel) {
+        // the channel's route already leads to the owning connection
+        return channel.toSubscribeMessage();
+    }
+
+    /**
+     * @return a view of the connection which owns a channel, which follows
+     *         the channel when the pool is resized
+     */
+    public InternalConnection routeFor(final String channelName) {
+        return new Route(channelName);
+    }
+
+    /* Connection implementation */
+
+    @Override
+    public void connect() {
+        connectRequested = true;
+        for (final Shard shard : shards) {
+            shard.connection.connect();
+        }
+    }
+
+    @Override
+    public void disconnect() {
+        connectRequested = false;
+        for (final Shard shard : shards) {
+            shard.connection.disconnect();
+        }
+    }
+
+    @Override
+    public void bind(final ConnectionState state, final ConnectionEventListener eventListener) {
+        eventListeners.get(state).add(eventListener);
+    }
+
+    @Override
+    public boolean unbind(final ConnectionState state, final ConnectionEventListener eventListener) {
+        return eventListeners.get(state).remove(eventListener);
+    }
+
+    @Override
+    public ConnectionState getState() {
+        boolean allConnected = true;
+        boolean allDisconnected = true;
+        boolean anyConnected = false;
+        boolean anyDisconnecting = false;
+        boolean anyReconnecting = false;
+
+        for (final Shard shard : shards) {
+            final ConnectionState state = shard.connection.getState();
+            allConnected &= state == ConnectionState.CONNECTED;
+            allDisconnected &= state == ConnectionState.DISCONNECTED;
+            anyConnected |= state == ConnectionState.CONNECTED;
+            anyDisconnecting |= state == ConnectionState.DISCONNECTING;
+            anyReconnecting |= state == ConnectionState.RECONNECTING;
+        }
+
+        if (allConnected) {
+            return ConnectionState.CONNECTED;
+        }
+        if (allDisconnected) {
+            return ConnectionState.DISCONNECTED;
+        }
+        if (anyDisconnecting) {
+            return ConnectionState.DISCONNECTING;
+        }
+        if (anyReconnecting || anyConnected) {
+            return ConnectionState.RECONNECTING;
+        }
+        return ConnectionState.CONNECTING;
+    }
+
+    @Override
+    public String getSocketId() {
+        return shards[0].connection.getSocketId();
+    }
+
+    @Override
+    public LatencyStats getLatencyStats() {
+        return shards[0].connection.getLatencyStats();
+    }
+
+    @Override
+    public void sendMessage(final String message) {
+        shards[0].connection.sendMessage(message);
+    }
+
+    /* implementation detail */
+
+    private void applySize(final int size) {
+        final Shard[] previous = shards;
+        if (size == previous.length) {
+            return;
+        }
+        final Ring previousRing = ring;
+        final Shard[] next = Arrays.copyOf(previous, size);
+        for (int i = previous.length; i < size; i++) {
+            next[i] = new Shard();
+        }
+        final Ring nextRing = new Ring(size);
+
+        final ChannelManager channelManager = factory.getChannelManager();
+        final List<String> moved = new ArrayList<String>();
+        for (final String channelName : channelManager.getChannelNames()) {
+            final InternalConnection from = previous[previousRing.indexFor(channelName)].connection;
+            final InternalConnection to = next[nextRing.indexFor(channelName)].connection;
+            if (from != to) {
+                moved.add(channelName);
+                if (from.getState() == ConnectionState.CONNECTED) {
+                    from.sendMessage(OutboundMessageEncoder.unsubscribe(channelName));
+                }
+            }
+        }
+
+        shards = next;
+        ring = nextRing;
+        log.fine("Resized connection pool from " + previous.length + " to " + size + ", moving " + moved.size()
+                + " channels");
+
+        for (final String channelName : moved) {
+            channelManager.resubscribe(channelName);
+        }
+        for (int i = size; i < previous.length; i++) {
+            previous[i].remove();
+        }
+        if (connectRequested) {
+            for (int i = previous.length; i < size; i++) {
+                next[i].connection.connect();
+            }
+        }
+        reportState();
+    }
+
+    private void reportState() {
+        final ConnectionState newState = getState();
+        if (newState == reportedState) {
+            return;
+        }
+        final ConnectionStateChange change = new ConnectionStateChange(reportedState, newState);
+        reportedState = newState;
+
+        final Set<ConnectionEventListener> interestedListeners = new HashSet<ConnectionEventListener>();
+        interestedListeners.addAll(eventListeners.get(ConnectionState.ALL));
+        interestedListeners.addAll(eventListeners.get(newState));
+
+        for (final ConnectionEventListener listener : interestedListeners) {
+            factory.queueOnEventThread(new Runnable() {
+                @Override
+                public void run() {
+                    listener.onConnectionStateChange(change);
+                }
+            });
+        }
+    }
+
+    private void reportError(final String message, final String code, final Exception e) {
+        final Set<ConnectionEventListener> allListeners = new HashSet<ConnectionEventListener>();
+        for (final Set<ConnectionEventListener> listenersForState : eventListeners.values()) {
+            allListeners.addAll(listenersForState);
+        }
+
+        for (final ConnectionEventListener listener : allListeners) {
+            factory.queueOnEventThread(new Runnable() {
+                @Override
+                public void run() {
+                    listener.onError(message, code, e);
+                }
+            });
+        }
+    }
+
+    /**
+     * One connection of the pool, and the listener through which the pool
+     * follows its state.
+     */
+    private class Shard implements ConnectionEventListener {
+        final InternalConnection connection;
+
+        Shard() {
+            connection = factory.newWebSocketConnection(url, options);
+            connection.bind(ConnectionState.ALL, this);
+        }
+
+        void remove() {
+            connection.unbind(ConnectionState.ALL, this);
+            connection.disconnect();
+        }
+
+        @Override
+        public void onConnectionStateChange(final ConnectionStateChange change) {
+            if (change.getCurrentState() == ConnectionState.CONNECTED) {
+                factory.getChannelManager().resubscribeChannelsOn(connection);
+            }
+            reportState();
+        }
+
+        @Override
+        public void onError(final String message, final String code, final Exception e) {
+            reportError(message, code, e);
+        }
+    }
+
+    /**
+     * Consistent hashing of channel names onto the connections: each
+     * connection owns many points on a ring of hashes, and a channel belongs
+     * to the connection owning the first point at or after its hash.
+     */
+    private static class Ring {
+        private final int[] points;
+        private final int[] owners;
+
+        Ring(final int size) {
+            final long[] entries = new long[size * POINTS_PER_CONNECTION];
+            for (int i = 0; i < size; i++) {
+                for (int v = 0; v < POINTS_PER_CONNECTION; v++) {
+                    final int point = hash("connection-" + i + "#" + v);
+                    // sort by point, keeping the owner in the low bits
+                    entries[i * POINTS_PER_CONNECTION + v] = ((long)point << 32) | i;
+                }
+            }
+            Arrays.sort(entries);
+
+            points = new int[entries.length];
+            owners = new int[entries.length];
+            for (int i = 0; i < entries.length; i++) {
+                points[i] = (int)(entries[i] >> 32);
+                owners[i] = (int)entries[i];
+            }
+        }
+
+        int indexFor(final String channelName) {
+            int index = Arrays.binarySearch(points, hash(channelName));
+            if (index < 0) {
+                index = -index - 1;
+            }
+            return owners[index == points.length ? 0 : index];
+        }
+
+        // String.hashCode() alone clusters similar names, so mix its bits
+        private static int hash(final String key) {
+            int h = key.hashCode();
+            h ^= h >>> 16;
+            h *= 0x85ebca6b;
+            h ^= h >>> 13;
+            h *= 0xc2b2ae35;
+            h ^= h >>> 16;
+            return h;
+        }
+    }
+
+    /**
+     * The connection of a channel, as seen by the channel: whichever
+     * connection of the pool owns it at the time.
+     */
+    private class Route implements InternalConnection {
+        private final String channelName;
+
+        Route(final String channelName) {
+            this.channelName = channelName;
+        }
+
+        @Override
+        public void sendMessage(final String message) {
+            connectionFor(channelName).sendMessage(message);
+        }
+
+        @Override
+        public void disconnect() {
+            connectionFor(channelName).disconnect();
+        }
+
+        @Override
+        public void connect() {
+            connectionFor(channelName).connect();
+        }
+
+        @Override
+        public void bind(final ConnectionState state, final ConnectionEventListener eventListener) {
+            connectionFor(channelName).bind(state, eventListener);
+        }
+
+        @Override
+        public boolean unbind(final ConnectionState state, final ConnectionEventListener eventListener) {
+            return connectionFor(channelName).unbind(state, eventListener);
+        }
+
+        @Override
+        public ConnectionState getState() {
+            return connectionFor(channelName).getState();
+        }
+
+        @Override
+        public String getSocketId() {
+            return connectionFor(channelName).getSocketId();
+        }
+
+        @Override
+        public LatencyStats getLatencyStats() {
+            return connectionFor(channelName).getLatencyStats();
+        }
+    }
+}
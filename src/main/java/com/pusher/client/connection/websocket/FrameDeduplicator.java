@@ -0,0 +1,67 @@
+package com.pusher.client.connection.websocket;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Passes on the first arrival of each frame received over several sockets
+ * subscribed to the same channels. Pusher frames carry no id, so frames are
+ * matched by their text; counting the arrivals per socket means a frame
+ * genuinely sent twice is still delivered twice. Only the most recently seen
+ * frames are remembered.
+ */
+class FrameDeduplicator {
+
+    private final int sources;
+    private final Map<String, int[]> arrivals;
+
+    /**
+     * @param sources the number of sockets, numbered from 0
+     * @param window the number of distinct frames to remember
+     */
+    FrameDeduplicator(final int sources, final int window) {
+        this.sources = sources;
+        this.arrivals = new LinkedHashMap<String, int[]>(16, 0.75f, false) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, int[]> eldest) {
+                return size() > window;
+            }
+        };
+    }
+
+    /**
+     * @return true if no other socket has already delivered this arrival of
+     *         the frame
+     */
+    synchronized boolean firstArrival(final int source, final String frame) {
+        int[] counts = arrivals.get(frame);
+        if (counts == null) {
+            // one count per socket, and the number delivered
+            counts = new int[sources + 1];
+            arrivals.put(frame, counts);
+        }
+        final int arrival = ++counts[source];
+        if (arrival > counts[sources]) {
+            counts[sources] = arrival;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Lines the arrivals counted for a socket up with those delivered, for a
+     * socket which has reconnected: what it missed while it was down must not
+     * make its next arrivals look like late copies.
+     */
+    synchronized void rebase(final int source) {
+        for (final int[] counts : arrivals.values()) {
+            counts[source] = counts[sources];
+        }
+    }
+
+    synchronized void clear() {
+        arrivals.clear();
+    }
+}
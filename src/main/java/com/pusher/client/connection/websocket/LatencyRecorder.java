@@ -0,0 +1,63 @@
+package com.pusher.client.connection.websocket;
+
+import java.util.Arrays;
+
+import com.pusher.client.connection.LatencyStats;
+
+/**
+ * Pairs pings with the pongs that answer them and keeps the round-trip times
+ * of the most recent ones. Pongs carry no id, so only one ping is timed at a
+ * time.
+ */
+class LatencyRecorder {
+
+    private final long[] window;
+    private int next;
+    private int count;
+    private long last;
+    private long pingSentAt;
+    private boolean awaitingPong;
+
+    LatencyRecorder(final int windowSize) {
+        window = new long[windowSize];
+    }
+
+    /**
+     * @return true if no ping is being timed, so a probe can be sent
+     */
+    synchronized boolean isIdle() {
+        return !awaitingPong;
+    }
+
+    synchronized void pingSent(final long now) {
+        if (!awaitingPong) {
+            awaitingPong = true;
+            pingSentAt = now;
+        }
+    }
+
+    synchronized void pongReceived(final long now) {
+        if (!awaitingPong) {
+            return;
+        }
+        awaitingPong = false;
+        last = now - pingSentAt;
+        window[next] = last;
+        next = (next + 1) % window.length;
+        if (count < window.length) {
+            count++;
+        }
+    }
+
+    /**
+     * Forgets the ping being timed, e.g. because the connection it was sent
+     * on has gone. The collected round-trip times are kept.
+     */
+    synchronized void reset() {
+        awaitingPong = false;
+    }
+
+    synchronized LatencyStats snapshot() {
+        return new LatencyStats(Arrays.copyOf(window, count), last);
+    }
+}
@@ -0,0 +1,218 @@
+package com.pusher.client.connection.websocket;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.pusher.client.PusherOptions;
+import com.pusher.client.channel.impl.InternalChannel;
+import com.pusher.client.connection.ConnectionEventListener;
+import com.pusher.client.connection.ConnectionState;
+import com.pusher.client.connection.ConnectionStateChange;
+import com.pusher.client.connection.LatencyStats;
+import com.pusher.client.connection.impl.CompositeConnection;
+import com.pusher.client.connection.impl.InternalConnection;
+import com.pusher.client.util.Factory;
+
+/**
+ * Keeps several independent connections to Pusher, possibly to different
+ * hosts, each subscribed to every channel. Each channel event is delivered
+ * from whichever connection receives it first and the later arrivals are
+ * dropped, so one slow or broken connection doesn't hold events up.
+ *
+ * The connection is CONNECTED while any of its connections is. Client
+ * events are sent over the first connected one only.
+ */
+public class RedundantConnection implements CompositeConnection {
+
+    private static final int DEDUPLICATION_WINDOW = 4096;
+
+    private final Factory factory;
+    private final FrameDeduplicator frames;
+    private final WebSocketConnection[] members;
+    private final List<InternalConnection> memberList;
+    private final Map<ConnectionState, Set<ConnectionEventListener>> eventListeners = new ConcurrentHashMap<ConnectionState, Set<ConnectionEventListener>>();
+
+    // only used on the event thread
+    private ConnectionState reportedState = ConnectionState.DISCONNECTED;
+
+    /**
+     * @param urls the URL of each connection to keep
+     */
+    public RedundantConnection(final List<String> urls, final PusherOptions options, final Factory factory) {
+        if (urls.size() < 2) {
+            throw new IllegalArgumentException("Redundant connections need at least two URLs, got " + urls.size());
+        }
+        this.factory = factory;
+
+        for (final ConnectionState state : ConnectionState.values()) {
+            eventListeners.put(state, Collections.newSetFromMap(new ConcurrentHashMap<ConnectionEventListener, Boolean>()));
+        }
+
+        frames = new FrameDeduplicator(urls.size(), DEDUPLICATION_WINDOW);
+        members = new WebSocketConnection[urls.size()];
+        for (int i = 0; i < members.length; i++) {
+            members[i] = factory.newWebSocketConnection(urls.get(i), options);
+            members[i].deduplicateWith(frames, i);
+            members[i].bind(ConnectionState.ALL, new MemberListener(members[i], i));
+        }
+        memberList = Collections.<InternalConnection>unmodifiableList(Arrays.<InternalConnection>asList(members));
+    }
+
+    @Override
+    public List<InternalConnection> connectionsFor(final String channelName) {
+        return memberList;
+    }
+
+    @Override
+    public String toSubscribeMessage(final InternalConnection connection, final InternalChannel channel) {
+        // private channels are authorized for each connection's own socket
+        return channel.toSubscribeMessage(connection.getSocketId());
+    }
+
+    /* Connection implementation */
+
+    @Override
+    public void connect() {
+        for (final WebSocketConnection member : members) {
+            member.connect();
+        }
+    }
+
+    @Override
+    public void disconnect() {
+        for (final WebSocketConnection member : members) {
+            member.disconnect();
+        }
+    }
+
+    @Override
+    public void bind(final ConnectionState state, final ConnectionEventListener eventListener) {
+        eventListeners.get(state).add(eventListener);
+    }
+
+    @Override
+    public boolean unbind(final ConnectionState state, final ConnectionEventListener eventListener) {
+        return eventListeners.get(state).remove(eventListener);
+    }
+
+    @Override
+    public ConnectionState getState() {
+        boolean allDisconnected = true;
+        boolean anyDisconnecting = false;
+        boolean anyReconnecting = false;
+
+        for (final WebSocketConnection member : members) {
+            final ConnectionState state = member.getState();
+            if (state == ConnectionState.CONNECTED) {
+                return ConnectionState.CONNECTED;
+            }
+            allDisconnected &= state == ConnectionState.DISCONNECTED;
+            anyDisconnecting |= state == ConnectionState.DISCONNECTING;
+            anyReconnecting |= state == ConnectionState.RECONNECTING;
+        }
+
+        if (allDisconnected) {
+            return ConnectionState.DISCONNECTED;
+        }
+        if (anyDisconnecting) {
+            return ConnectionState.DISCONNECTING;
+        }
+        if (anyReconnecting) {
+            return ConnectionState.RECONNECTING;
+        }
+        return ConnectionState.CONNECTING;
+    }
+
+    @Override
+    public String getSocketId() {
+        return sender().getSocketId();
+    }
+
+    @Override
+    public LatencyStats getLatencyStats() {
+        return sender().getLatencyStats();
+    }
+
+    @Override
+    public void sendMessage(final String message) {
+        sender().sendMessage(message);
+    }
+
+    /* implementation detail */
+
+    private InternalConnection sender() {
+        for (final WebSocketConnection member : members) {
+            if (member.getState() == ConnectionState.CONNECTED) {
+                return member;
+            }
+        }
+        return members[0];
+    }
+
+    private void reportState() {
+        final ConnectionState newState = getState();
+        if (newState == reportedState) {
+            return;
+        }
+        final ConnectionStateChange change = new ConnectionStateChange(reportedState, newState);
+        reportedState = newState;
+
+        final Set<ConnectionEventListener> interestedListeners = new HashSet<ConnectionEventListener>();
+        interestedListeners.addAll(eventListeners.get(ConnectionState.ALL));
+        interestedListeners.addAll(eventListeners.get(newState));
+
+        for (final ConnectionEventListener listener : interestedListeners) {
+            factory.queueOnEventThread(new Runnable() {
+                @Override
+                public void run() {
+                    listener.onConnectionStateChange(change);
+                }
+            });
+        }
+    }
+
+    private void reportError(final String message, final String code, final Exception e) {
+        final Set<ConnectionEventListener> allListeners = new HashSet<ConnectionEventListener>();
+        for (final Set<ConnectionEventListener> listenersForState : eventListeners.values()) {
+            allListeners.addAll(listenersForState);
+        }
+
+        for (final ConnectionEventListener listener : allListeners) {
+            factory.queueOnEventThread(new Runnable() {
+                @Override
+                public void run() {
+                    listener.onError(message, code, e);
+                }
+            });
+        }
+    }
+
+    private class MemberListener implements ConnectionEventListener {
+        private final InternalConnection member;
+        private final int source;
+
+        MemberListener(final InternalConnection member, final int source) {
+            this.member = member;
+            this.source = source;
+        }
+
+        @Override
+        public void onConnectionStateChange(final ConnectionStateChange change) {
+            if (change.getCurrentState() == ConnectionState.CONNECTED) {
+                frames.rebase(source);
+                factory.getChannelManager().resubscribeChannelsOn(member);
+            }
+            reportState();
+        }
+
+        @Override
+        public void onError(final String message, final String code, final Exception e) {
+            reportError(message, code, e);
+        }
+    }
+}
@@ -19,6 +19,9 @@ import org.java_websocket.handshake.ServerHandshake;
  * library. The purpose of this class is to enable the WebSocketConnection class
  * to be unit tested by swapping out an instance of this wrapper for a mock
  * version.
+ *
+ * {@link #send(String)} can be called from any thread: the frames are queued
+ * for the client's own writer thread.
  */
 public class WebSocketClientWrapper extends WebSocketClient {
 
@@ -26,36 +29,55 @@ public class WebSocketClientWrapper extends WebSocketClient {
     private WebSocketListener webSocketListener;
 
     public WebSocketClientWrapper(final URI uri, final Proxy proxy, final WebSocketListener webSocketListener) throws SSLException {
+        this(uri, proxy, null, webSocketListener);
+    }
+
+    /**
+     * @param sslSocketFactory
+     *            the factory of wss sockets, or null to create a new one. The
+     *            sessions of a factory's SSLContext are cached, so sharing
+     *            one lets reconnections resume a TLS session rather than go
+     *            through a full handshake.
+     */
+    public WebSocketClientWrapper(
+            final URI uri,
+            final Proxy proxy,
+            final SSLSocketFactory sslSocketFactory,
+            final WebSocketListener webSocketListener) throws SSLException {
         super(uri);
 
         if (uri.getScheme().equals(WSS_SCHEME)) {
+            final SSLSocketFactory factory = sslSocketFactory != null ? sslSocketFactory : newSSLSocketFactory();
             try {
-                SSLContext sslContext = SSLContext.getInstance("TLS");
-                sslContext.init(null, null, null); // will use java's default
-                                                   // key and trust store which
-                                                   // is sufficient unless you
-                                                   // deal with self-signed
-                                                   // certificates
-
-                final SSLSocketFactory factory = sslContext.getSocketFactory();// (SSLSocketFactory)
-                                                                               // SSLSocketFactory.getDefault();
-
                 setSocket(factory.createSocket());
             }
             catch (final IOException e) {
                 throw new SSLException(e);
             }
-            catch (final NoSuchAlgorithmException e) {
-                throw new SSLException(e);
-            }
-            catch (final KeyManagementException e) {
-                throw new SSLException(e);
-            }
         }
         this.webSocketListener = webSocketListener;
         setProxy(proxy);
     }
 
+    /**
+     * @return a factory of sockets using a new SSLContext, with java's default
+     *         key and trust store which is sufficient unless you deal with
+     *         self-signed certificates
+     */
+    public static SSLSocketFactory newSSLSocketFactory() throws SSLException {
+        try {
+            final SSLContext sslContext = SSLContext.getInstance("TLS");
+            sslContext.init(null, null, null);
+            return sslContext.getSocketFactory();
+        }
+        catch (final NoSuchAlgorithmException e) {
+            throw new SSLException(e);
+        }
+        catch (final KeyManagementException e) {
+            throw new SSLException(e);
+        }
+    }
+
     @Override
     public void onOpen(final ServerHandshake handshakedata) {
         if (webSocketListener != null) {
@@ -4,7 +4,10 @@ import java.net.Proxy;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.Collections;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -16,33 +19,63 @@ import javax.net.ssl.SSLException;
 
 import org.java_websocket.handshake.ServerHandshake;
 
-import com.google.gson.Gson;
-
+import com.pusher.client.channel.PusherEvent;
+import com.pusher.client.channel.impl.ChannelManager;
 import com.pusher.client.connection.ConnectionEventListener;
 import com.pusher.client.connection.ConnectionState;
 import com.pusher.client.connection.ConnectionStateChange;
+import com.pusher.client.connection.LatencyStats;
+import com.pusher.client.connection.QuadraticBackoff;
+import com.pusher.client.connection.ReconnectionPolicy;
 import com.pusher.client.connection.impl.InternalConnection;
 import com.pusher.client.util.Factory;
+import com.pusher.client.util.JsonCodec;
+import com.pusher.client.util.internal.OutboundMessageEncoder;
 
 public class WebSocketConnection implements InternalConnection, WebSocketListener {
     private static final Logger log = Logger.getLogger(WebSocketConnection.class.getName());
-    private static final Gson GSON = new Gson();
 
     private static final String INTERNAL_EVENT_PREFIX = "pusher:";
     private static final String PING_EVENT_SERIALIZED = "{\"event\": \"pusher:ping\"}";
+    private static final String PONG_EVENT = "pusher:pong";
+    private static final String CHANNEL_INTERNAL_EVENT_PREFIX = "pusher_internal:";
+    private static final String SUBSCRIPTION_SUCCEEDED_EVENT = "pusher_internal:subscription_succeeded";
+    private static final int LATENCY_WINDOW = 256;
+    private static final int DEDUPLICATION_WINDOW = 1024;
 
     private final Factory factory;
+    private final JsonCodec codec;
     private final ActivityTimer activityTimer;
+    private final LatencyRecorder latency = new LatencyRecorder(LATENCY_WINDOW);
     private final Map<ConnectionState, Set<ConnectionEventListener>> eventListeners = new ConcurrentHashMap<ConnectionState, Set<ConnectionEventListener>>();
-    private final URI webSocketUri;
+    private final URI[] endpoints;
+    private final long endpointStagger;
     private final Proxy proxy;
     private final int maxReconnectionAttempts;
-    private final int maxReconnectionGap;
+    private final ReconnectionPolicy reconnectionPolicy;
+    private final boolean handoverEnabled;
+    private final long handoverTimeout;
+    private final FrameDeduplicator duplicates = new FrameDeduplicator(2, DEDUPLICATION_WINDOW);
 
     private volatile ConnectionState state = ConnectionState.DISCONNECTED;
-    private WebSocketClientWrapper underlyingConnection;
+    // read by the threads sending messages, only replaced on the event thread
+    private volatile WebSocketClientWrapper underlyingConnection;
+    // the endpoint the current socket was dialled to
+    private URI webSocketUri;
     private String socketId;
     private int reconnectAttempts = 0;
+    private long reconnectDelay = 0;
+
+    // the socket frames are currently delivered from, 0 or 1, and whether
+    // the frames of both sockets are being deduplicated during a handover
+    private int primarySource = 0;
+    private boolean overlapping;
+    private volatile Handover handover;
+    private Race race;
+
+    // shared with the other connections carrying the same channels, if any
+    private FrameDeduplicator redundantFrames;
+    private int redundantSource;
 
 
     public WebSocketConnection(
@@ -53,12 +86,118 @@ public class WebSocketConnection implements InternalConnection, WebSocketListene
             int maxReconnectionGap,
             final Proxy proxy,
             final Factory factory) throws URISyntaxException {
-        webSocketUri = new URI(url);
-        activityTimer = new ActivityTimer(activityTimeout, pongTimeout);
+        this(url, activityTimeout, pongTimeout, 0, maxReconnectionAttempts, maxReconnectionGap, proxy, factory);
+    }
+
+    /**
+     * @param latencyProbeInterval
+     *            milliseconds between pings sent to measure the round-trip
+     *            time, or 0 to only ping an idle connection
+     */
+    public WebSocketConnection(
+            final String url,
+            final long activityTimeout,
+            final long pongTimeout,
+            final long latencyProbeInterval,
+            int maxReconnectionAttempts,
+            int maxReconnectionGap,
+            final Proxy proxy,
+            final Factory factory) throws URISyntaxException {
+        this(url, activityTimeout, pongTimeout, latencyProbeInterval, maxReconnectionAttempts,
+                new QuadraticBackoff(TimeUnit.SECONDS.toMillis(maxReconnectionGap)), proxy, factory);
+    }
+
+    /**
+     * @param latencyProbeInterval
+     *            milliseconds between pings sent to measure the round-trip
+     *            time, or 0 to only ping an idle connection
+     * @param reconnectionPolicy
+     *            decides how long to wait before each reconnection attempt
+     */
+    public WebSocketConnection(
+            final String url,
+            final long activityTimeout,
+            final long pongTimeout,
+            final long latencyProbeInterval,
+            int maxReconnectionAttempts,
+            final ReconnectionPolicy reconnectionPolicy,
+            final Proxy proxy,
+            final Factory factory) throws URISyntaxException {
+        this(url, activityTimeout, pongTimeout, latencyProbeInterval, maxReconnectionAttempts, reconnectionPolicy,
+                false, proxy, factory);
+    }
+
+    /**
+     * @param latencyProbeInterval
+     *            milliseconds between pings sent to measure the round-trip
+     *            time, or 0 to only ping an idle connection
+     * @param reconnectionPolicy
+     *            decides how long to wait before each reconnection attempt
+     * @param handoverEnabled
+     *            whether to open and subscribe a new socket before closing
+     *            one which stopped answering pings, or which the server
+     *            asked to reconnect
+     */
+    public WebSocketConnection(
+            final String url,
+            final long activityTimeout,
+            final long pongTimeout,
+            final long latencyProbeInterval,
+            int maxReconnectionAttempts,
+            final ReconnectionPolicy reconnectionPolicy,
+            final boolean handoverEnabled,
+            final Proxy proxy,
+            final Factory factory) throws URISyntaxException {
+        this(Collections.singletonList(url), 0, activityTimeout, pongTimeout, latencyProbeInterval,
+                maxReconnectionAttempts, reconnectionPolicy, handoverEnabled, proxy, factory);
+    }
+
+    /**
+     * @param urls
+     *            the endpoints to race when connecting: the first one is
+     *            dialled straight away and each of the others after the
+     *            stagger, and the first to be established is kept
+     * @param endpointStagger
+     *            milliseconds to wait for an endpoint before also dialling
+     *            the next one
+     * @param latencyProbeInterval
+     *            milliseconds between pings sent to measure the round-trip
+     *            time, or 0 to only ping an idle connection
+     * @param reconnectionPolicy
+     *            decides how long to wait before each reconnection attempt
+     * @param handoverEnabled
+     *            whether to open and subscribe a new socket before closing
+     *            one which stopped answering pings, or which the server
+     *            asked to reconnect
+     */
+    public WebSocketConnection(
+            final List<String> urls,
+            final long endpointStagger,
+            final long activityTimeout,
+            final long pongTimeout,
+            final long latencyProbeInterval,
+            int maxReconnectionAttempts,
+            final ReconnectionPolicy reconnectionPolicy,
+            final boolean handoverEnabled,
+            final Proxy proxy,
+            final Factory factory) throws URISyntaxException {
+        if (urls.isEmpty()) {
+            throw new IllegalArgumentException("At least one URL is needed to connect to");
+        }
+        endpoints = new URI[urls.size()];
+        for (int i = 0; i < endpoints.length; i++) {
+            endpoints[i] = new URI(urls.get(i));
+        }
+        webSocketUri = endpoints[0];
+        this.endpointStagger = endpointStagger;
+        activityTimer = new ActivityTimer(activityTimeout, pongTimeout, latencyProbeInterval);
         this.maxReconnectionAttempts = maxReconnectionAttempts;
-        this.maxReconnectionGap = maxReconnectionGap;
+        this.reconnectionPolicy = reconnectionPolicy;
+        this.handoverEnabled = handoverEnabled;
+        this.handoverTimeout = pongTimeout;
         this.proxy = proxy;
         this.factory = factory;
+        this.codec = factory.getJsonCodec();
 
         for (final ConnectionState state : ConnectionState.values()) {
             eventListeners.put(state, Collections.newSetFromMap(new ConcurrentHashMap<ConnectionEventListener, Boolean>()));
@@ -81,9 +220,17 @@ public class WebSocketConnection implements InternalConnection, WebSocketListene
     }
 
     private void tryConnecting(){
+        if (endpoints.length > 1) {
+            primarySource = 0;
+            updateState(ConnectionState.CONNECTING);
+            race = new Race();
+            race.dialNext();
+            return;
+        }
         try {
             underlyingConnection = factory
                     .newWebSocketClientWrapper(webSocketUri, proxy, WebSocketConnection.this);
+            primarySource = 0;
             updateState(ConnectionState.CONNECTING);
             underlyingConnection.connect();
         }
@@ -98,6 +245,7 @@ public class WebSocketConnection implements InternalConnection, WebSocketListene
             @Override
             public void run() {
                 if (state == ConnectionState.CONNECTED) {
+                    abandonHandover(false);
                     updateState(ConnectionState.DISCONNECTING);
                     underlyingConnection.close();
                 }
@@ -122,24 +270,37 @@ public class WebSocketConnection implements InternalConnection, WebSocketListene
 
     /* InternalConnection implementation detail */
 
+    /**
+     * Sends the message from the calling thread rather than the event thread,
+     * so it doesn't wait behind the inbound events queued there. The socket
+     * queues frames for its own writer thread, so it can be sent to from any
+     * thread.
+     */
     @Override
     public void sendMessage(final String message) {
-        factory.queueOnEventThread(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    if (state == ConnectionState.CONNECTED) {
-                        underlyingConnection.send(message);
-                    }
-                    else {
-                        sendErrorToAllListeners("Cannot send a message while in " + state + " state", null, null);
-                    }
-                }
-                catch (final Exception e) {
-                    sendErrorToAllListeners("An exception occurred while sending message [" + message + "]", null, e);
-                }
+        send(message);
+    }
+
+    private void sendPing() {
+        if (state == ConnectionState.CONNECTED) {
+            latency.pingSent(System.nanoTime());
+        }
+        send(PING_EVENT_SERIALIZED);
+    }
+
+    private void send(final String message) {
+        try {
+            // the socket is replaced before the state becomes CONNECTED
+            if (state == ConnectionState.CONNECTED) {
+                underlyingConnection.send(message);
             }
-        });
+            else {
+                sendErrorToAllListeners("Cannot send a message while in " + state + " state", null, null);
+            }
+        }
+        catch (final Exception e) {
+            sendErrorToAllListeners("An exception occurred while sending message [" + message + "]", null, e);
+        }
     }
 
     @Override
@@ -147,6 +308,11 @@ public class WebSocketConnection implements InternalConnection, WebSocketListene
         return socketId;
     }
 
+    @Override
+    public LatencyStats getLatencyStats() {
+        return latency.snapshot();
+    }
+
     /* implementation detail */
 
     private void updateState(final ConnectionState newState) {
@@ -169,46 +335,52 @@ public class WebSocketConnection implements InternalConnection, WebSocketListene
         }
     }
 
-    private void handleEvent(final String event, final String wholeMessage) {
-        if (event.startsWith(INTERNAL_EVENT_PREFIX)) {
-            handleInternalEvent(event, wholeMessage);
+    private void handleEvent(final PusherEvent event) {
+        final String eventName = event.getEventName();
+        if (eventName.startsWith(INTERNAL_EVENT_PREFIX)) {
+            handleInternalEvent(eventName, event);
         }
         else {
-            factory.getChannelManager().onMessage(event, wholeMessage);
+            factory.getChannelManager().onMessage(event);
         }
     }
 
-    private void handleInternalEvent(final String event, final String wholeMessage) {
-        if (event.equals("pusher:connection_established")) {
-            handleConnectionMessage(wholeMessage);
+    private void handleInternalEvent(final String eventName, final PusherEvent event) {
+        if (eventName.equals("pusher:connection_established")) {
+            handleConnectionMessage(event);
         }
-        else if (event.equals("pusher:error")) {
-            handleError(wholeMessage);
+        else if (eventName.equals("pusher:error")) {
+            handleError(event);
         }
     }
 
     @SuppressWarnings("rawtypes")
-    private void handleConnectionMessage(final String message) {
-        final Map jsonObject = GSON.fromJson(message, Map.class);
-        final String dataString = (String)jsonObject.get("data");
-        final Map dataMap = GSON.fromJson(dataString, Map.class);
+    private void handleConnectionMessage(final PusherEvent event) {
+        final Map dataMap = codec.decodeObject(event.getData());
         socketId = (String)dataMap.get("socket_id");
+        latency.reset();
+
+        // the server advertises how long it lets a connection idle, in seconds
+        final Object activityTimeout = dataMap.get("activity_timeout");
+        activityTimer.adoptServerTimeout(activityTimeout instanceof Number
+                ? TimeUnit.SECONDS.toMillis(((Number)activityTimeout).longValue())
+                : 0);
 
         if(state != ConnectionState.CONNECTED){
             updateState(ConnectionState.CONNECTED);
 
         }
         reconnectAttempts = 0;
+        reconnectDelay = 0;
     }
 
     @SuppressWarnings("rawtypes")
-    private void handleError(final String wholeMessage) {
-        final Map json = GSON.fromJson(wholeMessage, Map.class);
-        final Object data = json.get("data");
+    private void handleError(final PusherEvent event) {
+        final Object data = event.getProperty("data");
 
         Map dataMap;
         if (data instanceof String) {
-            dataMap = GSON.fromJson((String)data, Map.class);
+            dataMap = codec.decodeObject((String)data);
         }
         else {
             dataMap = (Map)data;
@@ -219,7 +391,12 @@ public class WebSocketConnection implements InternalConnection, WebSocketListene
         final Object codeObject = dataMap.get("code");
         String code = null;
         if (codeObject != null) {
-            code = String.valueOf(Math.round((Double)codeObject));
+            code = String.valueOf(Math.round(((Number)codeObject).doubleValue()));
+
+            // the server warns before closing a connection it wants replaced
+            if (handoverEnabled && isReconnectRequest(Integer.parseInt(code))) {
+                handOver();
+            }
         }
 
         sendErrorToAllListeners(message, code, null);
@@ -249,20 +426,84 @@ public class WebSocketConnection implements InternalConnection, WebSocketListene
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public void onMessage(final String message) {
+        final long receivedAt = System.nanoTime();
         activityTimer.activity();
 
-        factory.queueOnEventThread(new Runnable() {
+        final PusherEvent event = PusherEvent.fromJson(message, codec);
+        queueFrame(event, new Runnable() {
             @Override
             public void run() {
-                final Map<String, String> map = GSON.fromJson(message, Map.class);
-                final String event = map.get("event");
-                handleEvent(event, message);
+                receive(message, event, receivedAt);
             }
         });
     }
 
+    /**
+     * Queues the handling of a frame of the current socket: connection events
+     * on the event thread straight away, and channel events through the
+     * bounded inbound queue. The internal events of channels keep their place
+     * among the channel events, but are never dropped.
+     */
+    private void queueFrame(final PusherEvent event, final Runnable handler) {
+        final String eventName = event.getEventName();
+        if (eventName != null && eventName.startsWith(INTERNAL_EVENT_PREFIX)) {
+            factory.queueOnEventThread(handler);
+        }
+        else if (eventName != null && eventName.startsWith(CHANNEL_INTERNAL_EVENT_PREFIX)) {
+            factory.queueBehindInbound(handler);
+        }
+        else if (!factory.queueInbound(handler)) {
+            factory.queueOnEventThread(new Runnable() {
+                @Override
+                public void run() {
+                    if (state == ConnectionState.CONNECTED) {
+                        log.fine("Inbound queue full - disconnecting");
+                        sendErrorToAllListeners("Inbound queue full, events are arriving faster than they are handled",
+                                null, null);
+                        closeUnderlyingConnection("Inbound queue full");
+                    }
+                }
+            });
+        }
+    }
+
+    private void receive(final String message, final PusherEvent event, final long receivedAt) {
+        if (!isDuplicate(0, message)) {
+            if (!isRedundant(message, event)) {
+                handleEvent(event, receivedAt);
+            }
+        }
+    }
+
+    /**
+     * Delivers only the first arrival of each channel event among this and
+     * other connections subscribed to the same channels.
+     *
+     * @param source the number of this connection among them
+     */
+    void deduplicateWith(final FrameDeduplicator frames, final int source) {
+        this.redundantFrames = frames;
+        this.redundantSource = source;
+    }
+
+    private boolean isRedundant(final String message, final PusherEvent event) {
+        return redundantFrames != null
+                && !event.getEventName().startsWith(INTERNAL_EVENT_PREFIX)
+                && !redundantFrames.firstArrival(redundantSource, message);
+    }
+
+    private void handleEvent(final PusherEvent event, final long receivedAt) {
+        if (PONG_EVENT.equals(event.getEventName())) {
+            latency.pongReceived(receivedAt);
+        }
+        handleEvent(event);
+    }
+
+    private boolean isDuplicate(final int source, final String message) {
+        return overlapping && !duplicates.firstArrival(source, message);
+    }
+
     @Override
     public void onClose(final int code, final String reason, final boolean remote) {
         if (state == ConnectionState.DISCONNECTED || state == ConnectionState.RECONNECTING) {
@@ -271,6 +512,11 @@ public class WebSocketConnection implements InternalConnection, WebSocketListene
             return;
         }
 
+        if (handover != null && state == ConnectionState.CONNECTED && shouldReconnect(code)) {
+            log.fine("Socket closed while handing over to a new one. Close code [" + code + "]");
+            return;
+        }
+
         if(!shouldReconnect(code)) {
             updateState(ConnectionState.DISCONNECTING);
         }
@@ -279,7 +525,7 @@ public class WebSocketConnection implements InternalConnection, WebSocketListene
         if(state == ConnectionState.CONNECTED || state == ConnectionState.CONNECTING){
 
             if(reconnectAttempts < maxReconnectionAttempts){
-                tryReconnecting();
+                tryReconnecting(code);
             }
             else{
                 updateState(ConnectionState.DISCONNECTING);
@@ -293,18 +539,29 @@ public class WebSocketConnection implements InternalConnection, WebSocketListene
         }
     }
 
-    private void tryReconnecting() {
+    private void tryReconnecting(final int code) {
         reconnectAttempts++;
         updateState(ConnectionState.RECONNECTING);
-        long reconnectInterval = Math.min(maxReconnectionGap, reconnectAttempts * reconnectAttempts);
+        final long delay;
+        if (isReconnectRequest(code)) {
+            // the server asked for the connection to be replaced straight away
+            delay = 0;
+        }
+        else {
+            reconnectDelay = Math.max(0, reconnectionPolicy.getReconnectionDelay(reconnectAttempts, reconnectDelay));
+            delay = reconnectDelay;
+        }
 
         factory.getTimers().schedule(new Runnable() {
             @Override
             public void run() {
-                underlyingConnection.removeWebSocketListener();
+                // there is no socket yet if none could be created
+                if (underlyingConnection != null) {
+                    underlyingConnection.removeWebSocketListener();
+                }
                 tryConnecting();
             }
-        }, reconnectInterval, TimeUnit.SECONDS);
+        }, delay, TimeUnit.MILLISECONDS);
     }
 
     // Received error codes 4000-4099 indicate we shouldn't attempt reconnection
@@ -313,8 +570,21 @@ public class WebSocketConnection implements InternalConnection, WebSocketListene
         return code < 4000 || code >= 4100;
     }
 
+    // Error codes 4200-4299 ask the client to reconnect immediately
+    private static boolean isReconnectRequest(final int code) {
+        return code >= 4200 && code < 4300;
+    }
+
     private void cancelTimeoutsAndTransitonToDisconnected() {
         activityTimer.cancelTimeouts();
+        if (handover != null) {
+            factory.queueOnEventThread(new Runnable() {
+                @Override
+                public void run() {
+                    abandonHandover(false);
+                }
+            });
+        }
 
         factory.queueOnEventThread(new Runnable() {
             @Override
@@ -324,6 +594,7 @@ public class WebSocketConnection implements InternalConnection, WebSocketListene
             }
         });
         reconnectAttempts = 0;
+        reconnectDelay = 0;
     }
 
     @Override
@@ -341,76 +612,622 @@ public class WebSocketConnection implements InternalConnection, WebSocketListene
         });
     }
 
+    /**
+     * Watches the connection for inactivity. Every inbound frame only records
+     * when it arrived; a single scheduled check, re-armed for the next
+     * deadline each time it runs, decides when to ping the server and when
+     * to give up waiting for its response.
+     */
     private class ActivityTimer {
-        private final long activityTimeout;
-        private final long pongTimeout;
-
-        private Future<?> pingTimer;
-        private Future<?> pongTimer;
-
-        ActivityTimer(final long activityTimeout, final long pongTimeout) {
-            this.activityTimeout = activityTimeout;
-            this.pongTimeout = pongTimeout;
+        private final long configuredActivityTimeoutNanos;
+        private final long pongTimeoutNanos;
+        private final long probeInterval;
+        private volatile long activityTimeoutNanos;
+
+        private volatile long lastActivity;
+        private volatile boolean running;
+
+        // guarded by this
+        private Future<?> check;
+        private Future<?> probe;
+        private boolean awaitingPong;
+        private long pingSentAt;
+
+        ActivityTimer(final long activityTimeout, final long pongTimeout, final long probeInterval) {
+            this.configuredActivityTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(activityTimeout);
+            this.activityTimeoutNanos = configuredActivityTimeoutNanos;
+            this.pongTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(pongTimeout);
+            this.probeInterval = probeInterval;
         }
 
         /**
-         * On any activity from the server - Cancel pong timeout - Cancel
-         * currently ping timeout and re-schedule
+         * Use the lower of the configured timeout and the one advertised by
+         * the server for the current connection, re-arming the pending check
+         * if it is now due sooner.
+         *
+         * @param serverTimeout the server's timeout in milliseconds, or 0 if
+         *      it didn't advertise one
          */
-        synchronized void activity() {
-            if (pongTimer != null) {
-                pongTimer.cancel(true);
+        synchronized void adoptServerTimeout(final long serverTimeout) {
+            final long serverTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(serverTimeout);
+            final long timeout = serverTimeoutNanos > 0
+                    ? Math.min(configuredActivityTimeoutNanos, serverTimeoutNanos)
+                    : configuredActivityTimeoutNanos;
+            final boolean sooner = timeout < activityTimeoutNanos;
+            activityTimeoutNanos = timeout;
+
+            if (sooner && running && !awaitingPong) {
+                if (check != null) {
+                    check.cancel(false);
+                }
+                final long idle = System.nanoTime() - lastActivity;
+                scheduleCheck(Math.max(0, timeout - idle));
             }
+        }
 
-            if (pingTimer != null) {
-                pingTimer.cancel(false);
+        /**
+         * On any activity from the server - record the time, and start
+         * checking for inactivity if not already doing so
+         */
+        void activity() {
+            lastActivity = System.nanoTime();
+            if (!running) {
+                start();
             }
-            pingTimer = factory.getTimers().schedule(new Runnable() {
-                @Override
-                public void run() {
-                    log.fine("Sending ping");
-                    sendMessage(PING_EVENT_SERIALIZED);
-                    schedulePongCheck();
-                }
-            }, activityTimeout, TimeUnit.MILLISECONDS);
         }
 
         /**
          * Cancel any pending timeouts, for example because we are disconnected.
          */
         synchronized void cancelTimeouts() {
-            if (pingTimer != null) {
-                pingTimer.cancel(false);
+            running = false;
+            awaitingPong = false;
+            if (check != null) {
+                check.cancel(false);
+                check = null;
             }
-            if (pongTimer != null) {
-                pongTimer.cancel(false);
+            if (probe != null) {
+                probe.cancel(false);
+                probe = null;
             }
         }
 
-        /**
-         * Called when a ping is sent to await the response - Cancel any
-         * existing timeout - Schedule new one
-         */
-        private synchronized void schedulePongCheck() {
-            if (pongTimer != null) {
-                pongTimer.cancel(false);
+        private synchronized void start() {
+            if (!running) {
+                running = true;
+                awaitingPong = false;
+                scheduleCheck(activityTimeoutNanos);
+                if (probeInterval > 0) {
+                    probe = factory.getTimers().scheduleWithFixedDelay(new Runnable() {
+                        @Override
+                        public void run() {
+                            // pongs can't be told apart, so one ping at a time
+                            if (state == ConnectionState.CONNECTED && latency.isIdle()) {
+                                sendPing();
+                            }
+                        }
+                    }, probeInterval, probeInterval, TimeUnit.MILLISECONDS);
+                }
             }
+        }
 
-            pongTimer = factory.getTimers().schedule(new Runnable() {
+        private void scheduleCheck(final long delayNanos) {
+            check = factory.getTimers().schedule(new Runnable() {
                 @Override
                 public void run() {
+                    check();
+                }
+            }, delayNanos, TimeUnit.NANOSECONDS);
+        }
+
+        private void check() {
+            final boolean timedOut;
+            synchronized (this) {
+                if (!running) {
+                    return;
+                }
+                final long now = System.nanoTime();
+
+                if (awaitingPong && lastActivity - pingSentAt > 0) {
+                    // the server answered, or sent something else
+                    awaitingPong = false;
+                }
+
+                if (awaitingPong) {
+                    final long waited = now - pingSentAt;
+                    if (waited < pongTimeoutNanos) {
+                        scheduleCheck(pongTimeoutNanos - waited);
+                        return;
+                    }
+                    running = false;
+                    check = null;
+                    timedOut = true;
+                }
+                else {
+                    final long idle = now - lastActivity;
+                    if (idle < activityTimeoutNanos) {
+                        scheduleCheck(activityTimeoutNanos - idle);
+                        return;
+                    }
+                    awaitingPong = true;
+                    pingSentAt = now;
+                    scheduleCheck(pongTimeoutNanos);
+                    timedOut = false;
+                }
+            }
+
+            if (!timedOut) {
+                log.fine("Sending ping");
+                sendPing();
+            }
+            else {
+                if (handoverEnabled) {
+                    log.fine("Timed out awaiting pong from server - handing over to a new connection");
+                    handOver();
+                }
+                else {
                     log.fine("Timed out awaiting pong from server - disconnecting");
+                    closeAfterPongTimeout();
+                }
+            }
+        }
+    }
 
-                    underlyingConnection.removeWebSocketListener();
+    private void closeAfterPongTimeout() {
+        closeUnderlyingConnection("Pong timeout");
+    }
 
-                    underlyingConnection.close();
+    private void closeUnderlyingConnection(final String reason) {
+        underlyingConnection.removeWebSocketListener();
+
+        underlyingConnection.close();
+
+        // Proceed immediately to handle the close
+        // The WebSocketClient will attempt a graceful WebSocket shutdown by exchanging the close frames
+        // but may not succeed if this disconnect was called due to pong timeout...
+        onClose(-1, reason, false);
+    }
+
+    /* make-before-break handover */
+
+    private void handOver() {
+        factory.queueOnEventThread(new Runnable() {
+            @Override
+            public void run() {
+                if (handover != null || state != ConnectionState.CONNECTED) {
+                    return;
+                }
+                try {
+                    handover = new Handover(1 - primarySource);
+                    handover.start();
+                }
+                catch (final SSLException e) {
+                    handover = null;
+                    sendErrorToAllListeners("Error connecting over SSL", null, e);
+                    closeAfterPongTimeout();
+                }
+            }
+        });
+    }
+
+    /**
+     * Gives up on a handover that hasn't completed. Must be called on the
+     * event thread.
+     *
+     * @param fallBack whether to replace the old socket the usual way instead
+     */
+    private void abandonHandover(final boolean fallBack) {
+        final Handover abandoned = handover;
+        if (abandoned == null) {
+            return;
+        }
+        handover = null;
+        overlapping = false;
+        duplicates.clear();
+        abandoned.close();
+
+        if (fallBack && state == ConnectionState.CONNECTED) {
+            log.fine("Handover did not complete - disconnecting");
+            closeAfterPongTimeout();
+        }
+    }
+
+    /**
+     * Opens a second socket while the current one is still open and
+     * subscribes it to all the channels. Until it is switched to, frames from
+     * both sockets are delivered, whichever arrives first. The switch happens
+     * once every channel is subscribed on the new socket, and the old one is
+     * then closed.
+     *
+     * All the methods apart from those of WebSocketListener run on the event
+     * thread.
+     */
+    private class Handover implements WebSocketListener {
+        private final int source;
+        private final WebSocketClientWrapper socket;
+        private final Set<String> handedOver = new LinkedHashSet<String>();
+        private final Set<String> pending = new HashSet<String>();
+        private Future<?> deadline;
+        private String newSocketId;
+        private long newActivityTimeout;
+        private volatile boolean switched;
+
+        Handover(final int source) throws SSLException {
+            this.source = source;
+            this.socket = factory.newWebSocketClientWrapper(webSocketUri, proxy, this);
+        }
+
+        void start() {
+            overlapping = true;
+            deadline = factory.getTimers().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    factory.queueOnEventThread(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (handover == Handover.this) {
+                                abandonHandover(true);
+                            }
+                        }
+                    });
+                }
+            }, handoverTimeout, TimeUnit.MILLISECONDS);
+            socket.connect();
+        }
 
-                    // Proceed immediately to handle the close
-                    // The WebSocketClient will attempt a graceful WebSocket shutdown by exchanging the close frames
-                    // but may not succeed if this disconnect was called due to pong timeout...
-                    onClose(-1, "Pong timeout", false);
+        void close() {
+            if (deadline != null) {
+                deadline.cancel(false);
+            }
+            socket.removeWebSocketListener();
+            socket.close();
+        }
+
+        private void receive(final String message, final PusherEvent event, final long receivedAt) {
+            if (switched) {
+                if (!isDuplicate(source, message)) {
+                    if (!isRedundant(message, event)) {
+                        handleEvent(event, receivedAt);
+                    }
                 }
-            }, pongTimeout, TimeUnit.MILLISECONDS);
+                return;
+            }
+            if (handover != this) {
+                return;
+            }
+
+            final String eventName = event.getEventName();
+            if (eventName.equals("pusher:connection_established")) {
+                established(event);
+                return;
+            }
+            if (eventName.startsWith(INTERNAL_EVENT_PREFIX)) {
+                // pongs and errors concern the socket being handed over to
+                return;
+            }
+            if (!isDuplicate(source, message) && !isRedundant(message, event)) {
+                handleEvent(event);
+            }
+            if (eventName.equals(SUBSCRIPTION_SUCCEEDED_EVENT) && pending.remove(event.getChannelName())
+                    && pending.isEmpty()) {
+                switchOver();
+            }
+        }
+
+        @SuppressWarnings("rawtypes")
+        private void established(final PusherEvent event) {
+            final Map dataMap = codec.decodeObject(event.getData());
+            newSocketId = (String)dataMap.get("socket_id");
+            final Object activityTimeout = dataMap.get("activity_timeout");
+            newActivityTimeout = activityTimeout instanceof Number
+                    ? TimeUnit.SECONDS.toMillis(((Number)activityTimeout).longValue())
+                    : 0;
+
+            // private channels are authorized for the socket they are subscribed on
+            final ChannelManager channelManager = factory.getChannelManager();
+            for (final String channelName : channelManager.getChannelNames(WebSocketConnection.this)) {
+                final String subscribeMessage = channelManager.toSubscribeMessage(channelName, newSocketId);
+                if (subscribeMessage != null) {
+                    handedOver.add(channelName);
+                    pending.add(channelName);
+                    socket.send(subscribeMessage);
+                }
+            }
+
+            if (pending.isEmpty()) {
+                switchOver();
+            }
+        }
+
+        private void switchOver() {
+            log.fine("Handing over to new connection [" + newSocketId + "]");
+            if (deadline != null) {
+                deadline.cancel(false);
+            }
+            switched = true;
+            handover = null;
+
+            underlyingConnection.removeWebSocketListener();
+            underlyingConnection.close();
+            underlyingConnection = socket;
+            primarySource = source;
+            socketId = newSocketId;
+
+            latency.reset();
+            activityTimer.cancelTimeouts();
+            activityTimer.adoptServerTimeout(newActivityTimeout);
+            activityTimer.activity();
+
+            // catch up with channels subscribed to or left during the handover
+            final ChannelManager channelManager = factory.getChannelManager();
+            final Set<String> channelNames = channelManager.getChannelNames(WebSocketConnection.this);
+            for (final String channelName : channelNames) {
+                if (!handedOver.contains(channelName)) {
+                    final String subscribeMessage = channelManager.toSubscribeMessage(channelName, newSocketId);
+                    if (subscribeMessage != null) {
+                        send(subscribeMessage);
+                    }
+                }
+            }
+            for (final String channelName : handedOver) {
+                if (!channelNames.contains(channelName)) {
+                    send(OutboundMessageEncoder.unsubscribe(channelName));
+                }
+            }
+
+            // frames from the old socket may still be waiting to be handled,
+            // and must still be checked against those of the new one
+            factory.queueBehindInbound(new Runnable() {
+                @Override
+                public void run() {
+                    if (handover == null) {
+                        overlapping = false;
+                        duplicates.clear();
+                    }
+                }
+            });
+        }
+
+        /* WebSocketListener implementation */
+
+        @Override
+        public void onOpen(final ServerHandshake handshakedata) {
+        }
+
+        @Override
+        public void onMessage(final String message) {
+            final long receivedAt = System.nanoTime();
+            final PusherEvent event = PusherEvent.fromJson(message, codec);
+            final Runnable handler = new Runnable() {
+                @Override
+                public void run() {
+                    receive(message, event, receivedAt);
+                }
+            };
+            if (switched) {
+                activityTimer.activity();
+                queueFrame(event, handler);
+            }
+            else {
+                factory.queueOnEventThread(handler);
+            }
+        }
+
+        @Override
+        public void onClose(final int code, final String reason, final boolean remote) {
+            if (switched) {
+                WebSocketConnection.this.onClose(code, reason, remote);
+                return;
+            }
+            factory.queueOnEventThread(new Runnable() {
+                @Override
+                public void run() {
+                    if (handover == Handover.this) {
+                        abandonHandover(true);
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void onError(final Exception ex) {
+            if (switched) {
+                WebSocketConnection.this.onError(ex);
+            }
+            else {
+                log.fine("Error on the connection being handed over to: " + ex);
+            }
+        }
+    }
+
+    /* endpoint racing */
+
+    /**
+     * Dials the endpoints one after the other, each after the stagger or as
+     * soon as the previous attempt has failed, without waiting for the
+     * earlier ones to give up. The first socket on which Pusher confirms the
+     * connection becomes the connection's socket and the others are closed.
+     * If every endpoint fails, the last failure is handled like that of a
+     * single socket.
+     *
+     * All the methods apart from those of WebSocketListener run on the event
+     * thread.
+     */
+    private class Race {
+        private final List<Contender> contenders = new ArrayList<Contender>();
+        private Future<?> nextDial;
+        private int failed;
+        private boolean over;
+
+        void dialNext() {
+            if (nextDial != null) {
+                nextDial.cancel(false);
+                nextDial = null;
+            }
+            final int index = contenders.size();
+            if (over || index == endpoints.length) {
+                return;
+            }
+            final Contender contender = new Contender(endpoints[index]);
+            contenders.add(contender);
+            try {
+                contender.dial();
+            }
+            catch (final SSLException e) {
+                log.fine("Error connecting over SSL to [" + endpoints[index] + "]: " + e);
+                contender.sslError = e;
+                lost(contender, -1, "Error connecting over SSL", false);
+                return;
+            }
+
+            if (index + 1 < endpoints.length) {
+                nextDial = factory.getTimers().schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        factory.queueOnEventThread(new Runnable() {
+                            @Override
+                            public void run() {
+                                // unless a failure dialled it already
+                                if (race == Race.this && contenders.size() == index + 1) {
+                                    dialNext();
+                                }
+                            }
+                        });
+                    }
+                }, endpointStagger, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private void won(final Contender winner) {
+            log.fine("Connected to [" + winner.uri + "] first of " + contenders.size() + " endpoints");
+            end();
+            winner.won = true;
+            for (final Contender contender : contenders) {
+                if (contender != winner) {
+                    contender.abort();
+                }
+            }
+            underlyingConnection = winner.socket;
+            webSocketUri = winner.uri;
+        }
+
+        private void lost(final Contender loser, final int code, final String reason, final boolean remote) {
+            failed++;
+            if (contenders.size() < endpoints.length) {
+                dialNext();
+            }
+            else if (failed == contenders.size()) {
+                end();
+                if (loser.socket != null) {
+                    underlyingConnection = loser.socket;
+                }
+                else {
+                    sendErrorToAllListeners("Error connecting over SSL", null, loser.sslError);
+                }
+                onClose(code, reason, remote);
+            }
+        }
+
+        private void end() {
+            over = true;
+            race = null;
+            if (nextDial != null) {
+                nextDial.cancel(false);
+                nextDial = null;
+            }
+        }
+
+        private class Contender implements WebSocketListener {
+            private final URI uri;
+            private WebSocketClientWrapper socket;
+            private SSLException sslError;
+            private boolean lost;
+            private volatile boolean won;
+
+            Contender(final URI uri) {
+                this.uri = uri;
+            }
+
+            void dial() throws SSLException {
+                socket = factory.newWebSocketClientWrapper(uri, proxy, this);
+                socket.connect();
+            }
+
+            void abort() {
+                lost = true;
+                socket.removeWebSocketListener();
+                socket.close();
+            }
+
+            private void receive(final String message, final PusherEvent event, final long receivedAt) {
+                if (!won) {
+                    if (over || lost) {
+                        return;
+                    }
+                    if (!event.getEventName().equals("pusher:connection_established")) {
+                        return;
+                    }
+                    won(this);
+                    activityTimer.activity();
+                }
+                WebSocketConnection.this.receive(message, event, receivedAt);
+            }
+
+            /* WebSocketListener implementation */
+
+            @Override
+            public void onOpen(final ServerHandshake handshakedata) {
+            }
+
+            @Override
+            public void onMessage(final String message) {
+                final long receivedAt = System.nanoTime();
+                final PusherEvent event = PusherEvent.fromJson(message, codec);
+                final Runnable handler = new Runnable() {
+                    @Override
+                    public void run() {
+                        receive(message, event, receivedAt);
+                    }
+                };
+                if (won) {
+                    activityTimer.activity();
+                    queueFrame(event, handler);
+                }
+                else {
+                    factory.queueOnEventThread(handler);
+                }
+            }
+
+            @Override
+            public void onClose(final int code, final String reason, final boolean remote) {
+                if (won) {
+                    WebSocketConnection.this.onClose(code, reason, remote);
+                    return;
+                }
+                factory.queueOnEventThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (won) {
+                            WebSocketConnection.this.onClose(code, reason, remote);
+                        }
+                        else if (!over && !lost) {
+                            lost = true;
+                            log.fine("Failed to connect to [" + uri + "]. Close code [" + code + "]");
+                            lost(Contender.this, code, reason, remote);
+                        }
+                    }
+                });
+            }
+
+            @Override
+            public void onError(final Exception ex) {
+                if (won) {
+                    WebSocketConnection.this.onError(ex);
+                }
+                else {
+                    log.fine("Error on the connection to [" + uri + "]: " + ex);
+                }
+            }
         }
     }
 }
@@ -3,22 +3,37 @@ package com.pusher.client.util;
 import java.net.Proxy;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLSocketFactory;
 
 import com.pusher.client.Authorizer;
 import com.pusher.client.PusherOptions;
 import com.pusher.client.channel.impl.ChannelImpl;
 import com.pusher.client.channel.impl.ChannelManager;
+import com.pusher.client.channel.impl.ClientEventBuffer;
+import com.pusher.client.channel.impl.ClientEventLimiter;
 import com.pusher.client.channel.impl.PrivateEncryptedChannelImpl;
 import com.pusher.client.channel.impl.PresenceChannelImpl;
 import com.pusher.client.channel.impl.PrivateChannelImpl;
 import com.pusher.client.crypto.nacl.SecretBoxOpenerFactory;
+import com.pusher.client.connection.ConnectionState;
+import com.pusher.client.connection.InboundOverflowPolicy;
+import com.pusher.client.connection.impl.ConnectionPool;
 import com.pusher.client.connection.impl.InternalConnection;
+import com.pusher.client.connection.websocket.RedundantConnection;
 import com.pusher.client.connection.websocket.WebSocketClientWrapper;
 import com.pusher.client.connection.websocket.WebSocketConnection;
 import com.pusher.client.connection.websocket.WebSocketListener;
@@ -43,42 +58,187 @@ import com.pusher.client.connection.websocket.WebSocketListener;
  */
 public class Factory {
 
+    private final PusherOptions options;
+    private JsonCodec jsonCodec;
     private InternalConnection connection;
     private ChannelManager channelManager;
-    private ExecutorService eventQueue;
+    private Executor eventQueue;
     private ScheduledExecutorService timers;
-    private static final Object eventLock = new Object();
+    private SSLSocketFactory sslSocketFactory;
+    private ClientEventLimiter clientEventLimiter;
+    private final Executor[] stripes;
+    private final Object[] stripeLocks;
+    private final InboundQueue inbound;
+    // Keeps the tasks of this client from overlapping when the event queue is
+    // replaced after shutdownThreads() while the old one is still draining.
+    // It is per client, so separate clients never contend on it.
+    private final Object eventLock = new Object();
+    // the tasks waiting for the event thread: the connection's and channels'
+    // own first, then those calling the listeners of channel events, then
+    // the channel events received, in the inbound queue
+    private final Queue<Runnable> controlLane = new ConcurrentLinkedQueue<Runnable>();
+    private final Queue<Runnable> listenerLane = new ConcurrentLinkedQueue<Runnable>();
+    private final Runnable runNextTask = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (eventLock) {
+                Runnable next = controlLane.poll();
+                if (next == null) {
+                    next = listenerLane.poll();
+                }
+                if (next == null) {
+                    // new events only once the listeners have caught up
+                    next = inbound.poll();
+                }
+                if (next != null) {
+                    next.run();
+                }
+            }
+        }
+    };
+
+    public Factory() {
+        this(null);
+    }
+
+    public Factory(final PusherOptions options) {
+        this.options = options;
+        this.inbound = options != null
+                ? new InboundQueue(options.getInboundQueueCapacity(), options.getInboundOverflowPolicy())
+                : new InboundQueue(0, InboundOverflowPolicy.BLOCK);
+
+        final int stripeCount = options != null ? options.getDispatchStripes() : 1;
+        if (stripeCount > 1) {
+            stripes = new Executor[stripeCount];
+            stripeLocks = new Object[stripeCount];
+            for (int i = 0; i < stripeCount; i++) {
+                stripeLocks[i] = new Object();
+            }
+        }
+        else {
+            stripes = null;
+            stripeLocks = null;
+        }
+    }
 
     public synchronized InternalConnection getConnection(final String apiKey, final PusherOptions options) {
         if (connection == null) {
-            try {
-                connection = new WebSocketConnection(
-                        options.buildUrl(apiKey),
-                        options.getActivityTimeout(),
-                        options.getPongTimeout(),
-                        options.getMaxReconnectionAttempts(),
-                        options.getMaxReconnectGapInSeconds(),
-                        options.getProxy(),
-                        this);
+            final List<String> redundantHosts = options.getRedundantHosts();
+            if (!redundantHosts.isEmpty()) {
+                if (options.getConnectionPoolSize() > 1) {
+                    throw new IllegalArgumentException("Redundant connections cannot be combined with a connection pool");
+                }
+                final List<String> urls = new ArrayList<String>();
+                urls.add(options.buildUrl(apiKey));
+                for (final String host : redundantHosts) {
+                    urls.add(options.buildUrl(apiKey, host));
+                }
+                connection = new RedundantConnection(urls, options, this);
             }
-            catch (final URISyntaxException e) {
-                throw new IllegalArgumentException("Failed to initialise connection", e);
+            else if (options.getConnectionPoolSize() > 1) {
+                connection = new ConnectionPool(options.buildUrl(apiKey), options, options.getConnectionPoolSize(), this);
+            }
+            else {
+                connection = newWebSocketConnection(options.buildEndpointUrls(apiKey), options);
             }
         }
         return connection;
     }
 
+    public WebSocketConnection newWebSocketConnection(final String url, final PusherOptions options) {
+        return newWebSocketConnection(Collections.singletonList(url), options);
+    }
+
+    /**
+     * @param urls the endpoints to race when connecting, the first one being
+     *            dialled straight away
+     */
+    public WebSocketConnection newWebSocketConnection(final List<String> urls, final PusherOptions options) {
+        try {
+            return new WebSocketConnection(
+                    urls,
+                    options.getEndpointStagger(),
+                    options.getActivityTimeout(),
+                    options.getPongTimeout(),
+                    options.getLatencyProbeInterval(),
+                    options.getMaxReconnectionAttempts(),
+                    options.getReconnectionPolicy(),
+                    options.isConnectionHandover(),
+                    options.getProxy(),
+                    this);
+        }
+        catch (final URISyntaxException e) {
+            throw new IllegalArgumentException("Failed to initialise connection", e);
+        }
+    }
+
+    /**
+     * The codec shared by the connection and every channel of this client:
+     * the one set on the options, or a Gson backed one by default.
+     */
+    public synchronized JsonCodec getJsonCodec() {
+        if (jsonCodec == null) {
+            jsonCodec = options != null && options.getJsonCodec() != null
+                    ? options.getJsonCodec()
+                    : new GsonJsonCodec();
+        }
+        return jsonCodec;
+    }
+
     public WebSocketClientWrapper newWebSocketClientWrapper(final URI uri, final Proxy proxy, final WebSocketListener webSocketListener) throws SSLException {
-        return new WebSocketClientWrapper(uri, proxy, webSocketListener);
+        return new WebSocketClientWrapper(uri, proxy, getSSLSocketFactory(), webSocketListener);
+    }
+
+    /**
+     * The factory of wss sockets for every connection of this client, so that
+     * they share the TLS session cache of its SSLContext: the one set on the
+     * options, or a new one by default.
+     */
+    public synchronized SSLSocketFactory getSSLSocketFactory() throws SSLException {
+        if (sslSocketFactory == null) {
+            if (options != null && options.getSSLContext() != null) {
+                sslSocketFactory = options.getSSLContext().getSocketFactory();
+            }
+            else {
+                sslSocketFactory = WebSocketClientWrapper.newSSLSocketFactory();
+            }
+        }
+        return sslSocketFactory;
     }
 
     public synchronized ScheduledExecutorService getTimers() {
+        if (options != null && options.getTimerExecutor() != null) {
+            return options.getTimerExecutor();
+        }
         if (timers == null) {
             timers = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("timers"));
         }
         return timers;
     }
 
+    /**
+     * @return a buffer for the client events of a channel, or null if
+     *         client events aren't buffered
+     */
+    public ClientEventBuffer newClientEventBuffer() {
+        if (options == null || options.getClientEventBufferCapacity() == 0) {
+            return null;
+        }
+        return new ClientEventBuffer(options.getClientEventBufferCapacity(),
+                TimeUnit.MILLISECONDS.toNanos(options.getClientEventMaxAge()), options.getClientEventOverflowPolicy());
+    }
+
+    /**
+     * The rate limiter shared by the client events of all the channels of
+     * this client, or null if client events aren't rate limited.
+     */
+    public synchronized ClientEventLimiter getClientEventLimiter() {
+        if (clientEventLimiter == null && options != null && options.getClientEventRate() > 0) {
+            clientEventLimiter = new ClientEventLimiter(options.getClientEventRate(), options.getClientEventBurst(), this);
+        }
+        return clientEventLimiter;
+    }
+
     public ChannelImpl newPublicChannel(final String channelName) {
         return new ChannelImpl(channelName, this);
     }
@@ -108,31 +268,204 @@ public class Factory {
         return channelManager;
     }
 
+    /**
+     * Queues a task of the connection or of the channels, such as handling an
+     * inbound frame or a state change. It runs on the event thread ahead of
+     * any waiting task which delivers events to channel listeners, however
+     * many of those are waiting.
+     */
     public synchronized void queueOnEventThread(final Runnable r) {
+        controlLane.add(r);
+        runNextOnEventThread();
+    }
+
+    /**
+     * Queues the handling of a channel event received from Pusher, on the
+     * thread reading the socket. It runs on the event thread once the tasks
+     * queued with {@link #queueOnEventThread(Runnable)} and the waiting
+     * deliveries to listeners have run. When the inbound queue is full, this
+     * waits or drops an event, depending on the overflow policy.
+     *
+     * @return false if the event was dropped and the connection it was
+     *         received on should be closed
+     */
+    public boolean queueInbound(final Runnable r) {
+        if (inbound.offer(r)) {
+            synchronized (this) {
+                runNextOnEventThread();
+            }
+            return true;
+        }
+        return !inbound.failsConnection();
+    }
+
+    /**
+     * Queues a task on the event thread behind the channel events already
+     * waiting in the inbound queue, e.g. to act once those received so far
+     * have been handled. Unlike an event, it is never dropped and never waits
+     * for room, so it may be called from the event thread.
+     */
+    public synchronized void queueBehindInbound(final Runnable r) {
+        inbound.addBarrier(r);
+        runNextOnEventThread();
+    }
+
+    /**
+     * @return the queue of the channel events received by this client which
+     *         are waiting to be handled
+     */
+    public InboundQueue getInboundQueue() {
+        return inbound;
+    }
+
+    private synchronized void queueListenerTaskOnEventThread(final Runnable r) {
+        listenerLane.add(r);
+        runNextOnEventThread();
+    }
+
+    // each task queued in a lane is paired with one run of the next task of
+    // the highest priority lane, so both lanes drain whatever the ordering
+    private void runNextOnEventThread() {
         if (eventQueue == null) {
-            eventQueue = Executors.newSingleThreadExecutor(new DaemonThreadFactory("eventQueue"));
+            eventQueue = newDispatchQueue("eventQueue");
         }
-        eventQueue.execute(new Runnable() {
+        eventQueue.execute(runNextTask);
+    }
+
+    /**
+     * Queues a task which delivers something to the listeners of a channel.
+     * With a single dispatch stripe, the default, the task runs on the event
+     * thread, after every task previously queued for listeners but behind the
+     * tasks queued with {@link #queueOnEventThread(Runnable)}. Otherwise the
+     * task runs on the stripe the channel name hashes to, after every task
+     * previously queued for the same channel.
+     */
+    public void queueOnChannelThread(final String channelName, final Runnable task) {
+        // counted by the inbound queue until it has run
+        inbound.deliveryQueued();
+        final Runnable r = new Runnable() {
             @Override
             public void run() {
-                synchronized (eventLock) {
-                    r.run();
+                try {
+                    task.run();
+                }
+                finally {
+                    inbound.deliveryDone();
                 }
             }
-        });
+        };
+
+        if (stripes == null) {
+            queueListenerTaskOnEventThread(r);
+            return;
+        }
+
+        final int index = (channelName.hashCode() & 0x7fffffff) % stripes.length;
+        final Object stripeLock = stripeLocks[index];
+        synchronized (this) {
+            if (stripes[index] == null) {
+                stripes[index] = newDispatchQueue("dispatch-" + index);
+            }
+            stripes[index].execute(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (stripeLock) {
+                        r.run();
+                    }
+                }
+            });
+        }
     }
 
     public synchronized void shutdownThreads() {
+        // the connections of a pool share the threads until all are closed
+        if (connection != null && connection.getState() != ConnectionState.DISCONNECTED) {
+            return;
+        }
         if (eventQueue != null) {
-            eventQueue.shutdown();
+            shutdown(eventQueue);
             eventQueue = null;
         }
+        if (stripes != null) {
+            for (int i = 0; i < stripes.length; i++) {
+                if (stripes[i] != null) {
+                    shutdown(stripes[i]);
+                    stripes[i] = null;
+                }
+            }
+        }
         if (timers != null) {
             timers.shutdown();
             timers = null;
         }
     }
 
+    /**
+     * A queue whose tasks run one at a time and in order: a thread of its own,
+     * or a slot on the executor supplied through the options.
+     */
+    private Executor newDispatchQueue(final String name) {
+        if (options != null && options.getDispatchExecutor() != null) {
+            return new SerialExecutor(options.getDispatchExecutor());
+        }
+        return Executors.newSingleThreadExecutor(new DaemonThreadFactory(name));
+    }
+
+    /**
+     * Stops the threads owned by the library; a serial view of a supplied
+     * executor is simply dropped, letting its queued tasks run.
+     */
+    private static void shutdown(final Executor executor) {
+        if (executor instanceof ExecutorService) {
+            ((ExecutorService)executor).shutdown();
+        }
+    }
+
+    /**
+     * Runs tasks one at a time, in submission order, on an executor which
+     * may itself run tasks concurrently.
+     */
+    private static class SerialExecutor implements Executor {
+        private final Executor executor;
+        private final Queue<Runnable> tasks = new ArrayDeque<Runnable>();
+        private Runnable active;
+
+        SerialExecutor(final Executor executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        public synchronized void execute(final Runnable r) {
+            tasks.add(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        r.run();
+                    }
+                    finally {
+                        scheduleNext();
+                    }
+                }
+            });
+            if (active == null) {
+                scheduleNext();
+            }
+        }
+
+        private synchronized void scheduleNext() {
+            active = tasks.poll();
+            if (active != null) {
+                try {
+                    executor.execute(active);
+                }
+                catch (final RuntimeException e) {
+                    active = null;
+                    throw e;
+                }
+            }
+        }
+    }
+
     private static class DaemonThreadFactory implements ThreadFactory {
         private final String name;
 
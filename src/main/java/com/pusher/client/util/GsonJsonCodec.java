@@ -0,0 +1,74 @@
+package com.pusher.client.util;
+
+import java.util.Map;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+/**
+ * The default {@link JsonCodec}, backed by a single {@link Gson} instance.
+ */
+public class GsonJsonCodec implements JsonCodec {
+
+    private static final GsonJsonCodec DEFAULT = new GsonJsonCodec();
+
+    private final Gson gson;
+
+    public GsonJsonCodec() {
+        this(new Gson());
+    }
+
+    /**
+     * @param gson
+     *            The Gson instance to use, e.g. one which is already shared
+     *            with the rest of the application.
+     */
+    public GsonJsonCodec(final Gson gson) {
+        this.gson = gson;
+    }
+
+    /**
+     * The codec used where no client's codec is at hand: by
+     * {@link com.pusher.client.channel.PusherEvent#fromJson(String)}, and by
+     * the default {@link JsonCodec#decode(String, Class)} of codecs which
+     * can't bind bean types themselves.
+     *
+     * @return A codec backed by a Gson instance with the default settings.
+     */
+    public static GsonJsonCodec getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @return The Gson instance this codec decodes and encodes with.
+     */
+    public Gson getGson() {
+        return gson;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> decodeObject(final String json) {
+        try {
+            return gson.fromJson(json, Map.class);
+        }
+        catch (final JsonParseException e) {
+            throw new IllegalArgumentException("Unable to parse JSON object: " + json, e);
+        }
+    }
+
+    @Override
+    public <T> T decode(final String json, final Class<T> type) {
+        try {
+            return gson.fromJson(json, type);
+        }
+        catch (final JsonParseException e) {
+            throw new IllegalArgumentException("Unable to parse JSON as " + type.getName() + ": " + json, e);
+        }
+    }
+
+    @Override
+    public String encode(final Object value) {
+        return gson.toJson(value);
+    }
+}
@@ -0,0 +1,170 @@
+package com.pusher.client.util;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.logging.Logger;
+
+import com.pusher.client.connection.InboundOverflowPolicy;
+
+/**
+ * The channel events received from Pusher which are waiting to be handled on
+ * the event thread, bounded together with the deliveries to channel listeners
+ * which are waiting to run. Once listeners fall behind, new events are
+ * admitted according to the {@link InboundOverflowPolicy} rather than
+ * piling up until the heap runs out.
+ */
+public class InboundQueue {
+    private static final Logger log = Logger.getLogger(InboundQueue.class.getName());
+
+    private final int capacity;
+    private final InboundOverflowPolicy overflowPolicy;
+
+    // guarded by this
+    private final ArrayDeque<Runnable> frames = new ArrayDeque<Runnable>();
+    private int deliveries;
+    private long dropCount;
+
+    /**
+     * @param capacity the number of events and deliveries which may wait, or
+     *            0 for no limit
+     */
+    InboundQueue(final int capacity, final InboundOverflowPolicy overflowPolicy) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity must not be negative, got " + capacity);
+        }
+        if (overflowPolicy == null) {
+            throw new IllegalArgumentException("overflowPolicy must not be null");
+        }
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * @return the limit on the events and deliveries waiting, or 0 if there
+     *         is none
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the number of received events and listener deliveries waiting
+     *         to run
+     */
+    public synchronized int getDepth() {
+        return frames.size() + deliveries;
+    }
+
+    /**
+     * @return the number of received events dropped because the queue was
+     *         full
+     */
+    public synchronized long getDropCount() {
+        return dropCount;
+    }
+
+    /**
+     * Admits a received event, on the thread reading the socket.
+     *
+     * @return whether the event was queued, in which case it must be
+     *         followed by a {@link #poll()}; false if it was dropped
+     */
+    synchronized boolean offer(final Runnable frame) {
+        if (capacity > 0 && frames.size() + deliveries >= capacity) {
+            switch (overflowPolicy) {
+            case BLOCK:
+                if (!awaitRoom()) {
+                    return dropped();
+                }
+                break;
+            case DROP_OLDEST:
+                if (!dropOldestFrame()) {
+                    // only deliveries are waiting, and those can't be dropped
+                    return dropped();
+                }
+                dropCount++;
+                break;
+            default:
+                return dropped();
+            }
+        }
+        frames.add(frame);
+        return true;
+    }
+
+    /**
+     * Queues a task behind the events already waiting, to run once they have
+     * been handled. Unlike an event, it neither waits for room nor is ever
+     * dropped.
+     */
+    synchronized void addBarrier(final Runnable task) {
+        frames.add(new Barrier(task));
+    }
+
+    /**
+     * @return whether the last rejected event should fail its connection
+     */
+    boolean failsConnection() {
+        return overflowPolicy == InboundOverflowPolicy.FAIL_CONNECTION;
+    }
+
+    synchronized Runnable poll() {
+        final Runnable frame = frames.poll();
+        if (frame != null) {
+            notifyAll();
+        }
+        return frame;
+    }
+
+    synchronized void deliveryQueued() {
+        deliveries++;
+    }
+
+    synchronized void deliveryDone() {
+        deliveries--;
+        notifyAll();
+    }
+
+    private boolean awaitRoom() {
+        try {
+            while (frames.size() + deliveries >= capacity) {
+                wait();
+            }
+            return true;
+        }
+        catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private boolean dropOldestFrame() {
+        final Iterator<Runnable> waiting = frames.iterator();
+        while (waiting.hasNext()) {
+            if (!(waiting.next() instanceof Barrier)) {
+                waiting.remove();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean dropped() {
+        dropCount++;
+        log.fine("Inbound queue full, dropped an event (" + dropCount + " dropped so far)");
+        return false;
+    }
+
+    private static class Barrier implements Runnable {
+        private final Runnable task;
+
+        Barrier(final Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            task.run();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.pusher.client.util;
+
+import java.util.Map;
+
+/**
+ * Encodes and decodes the JSON messages exchanged with Pusher.
+ *
+ * <p>
+ * A single codec is shared by every channel and the connection of a
+ * {@link com.pusher.client.Pusher} instance, so implementations must be
+ * thread safe. The library uses {@link GsonJsonCodec} unless another one is
+ * set with {@link com.pusher.client.PusherOptions#setJsonCodec(JsonCodec)};
+ * {@link StreamingJsonCodec} is a dependency-free alternative.
+ * </p>
+ */
+public interface JsonCodec {
+
+    /**
+     * Decodes a JSON object.
+     *
+     * @param json
+     *            The JSON text.
+     * @return The object as a map, or null if the text is null or empty.
+     *         Values are decoded as follows:
+     *         - JSON strings - java.lang.String
+     *         - JSON number - java.lang.Double
+     *         - JSON boolean - java.lang.Boolean
+     *         - JSON array - java.util.List
+     *         - JSON object - java.util.Map
+     *         - JSON null - null
+     * @throws IllegalArgumentException
+     *             If the text is not a well formed JSON object.
+     */
+    Map<String, Object> decodeObject(String json);
+
+    /**
+     * Decodes JSON into an instance of a POJO bean type, e.g. for
+     * {@link com.pusher.client.channel.PusherEvent#getData(Class)}.
+     *
+     * The default implementation binds with {@link GsonJsonCodec#getDefault()},
+     * for codecs which only decode into maps and lists.
+     *
+     * @param <T>
+     *            The type to decode into.
+     * @param json
+     *            The JSON text.
+     * @param type
+     *            The class to decode into.
+     * @return An instance of type, or null if the text is null or empty.
+     * @throws IllegalArgumentException
+     *             If the text can't be decoded into type.
+     */
+    default <T> T decode(String json, Class<T> type) {
+        return GsonJsonCodec.getDefault().decode(json, type);
+    }
+
+    /**
+     * Encodes a value made up of maps, collections, strings, numbers,
+     * booleans and nulls, such as one returned by
+     * {@link #decodeObject(String)}.
+     *
+     * @param value
+     *            The value to encode.
+     * @return The JSON text.
+     */
+    String encode(Object value);
+}
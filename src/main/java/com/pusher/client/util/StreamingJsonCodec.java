@@ -0,0 +1,368 @@
+package com.pusher.client.util;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A dependency-free {@link JsonCodec}. Decoding is a single pass over the
+ * text straight into maps and lists, and encoding writes straight into one
+ * buffer, without the reflection and type adapter lookups of a data binding
+ * library. Bean types are still bound by the default
+ * {@link JsonCodec#decode(String, Class)}, with Gson.
+ */
+public class StreamingJsonCodec implements JsonCodec {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    @Override
+    public Map<String, Object> decodeObject(final String json) {
+        if (json == null) {
+            return null;
+        }
+
+        final Parser parser = new Parser(json);
+        parser.skipWhitespace();
+        if (parser.pos == json.length()) {
+            return null;
+        }
+        final Map<String, Object> result = parser.readObject();
+        parser.skipWhitespace();
+        if (parser.pos != json.length()) {
+            throw parser.error("Unexpected trailing content");
+        }
+        return result;
+    }
+
+    @Override
+    public String encode(final Object value) {
+        final StringBuilder sb = new StringBuilder();
+        write(sb, value);
+        return sb.toString();
+    }
+
+    /**
+     * Appends a string to a buffer as a quoted and escaped JSON string.
+     *
+     * @param sb
+     *            The buffer to write to.
+     * @param value
+     *            The string to write.
+     */
+    public static void writeString(final StringBuilder sb, final String value) {
+        sb.append('"');
+        final int length = value.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+            final String replacement;
+            if (c == '"') {
+                replacement = "\\\"";
+            }
+            else if (c == '\\') {
+                replacement = "\\\\";
+            }
+            else if (c == '\n') {
+                replacement = "\\n";
+            }
+            else if (c == '\r') {
+                replacement = "\\r";
+            }
+            else if (c == '\t') {
+                replacement = "\\t";
+            }
+            else if (c == '\b') {
+                replacement = "\\b";
+            }
+            else if (c == '\f') {
+                replacement = "\\f";
+            }
+            else if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+                replacement = null;
+            }
+            else {
+                continue;
+            }
+
+            sb.append(value, start, i);
+            if (replacement != null) {
+                sb.append(replacement);
+            }
+            else {
+                sb.append("\\u").append(HEX[c >> 12 & 0xf]).append(HEX[c >> 8 & 0xf])
+                        .append(HEX[c >> 4 & 0xf]).append(HEX[c & 0xf]);
+            }
+            start = i + 1;
+        }
+        sb.append(value, start, length);
+        sb.append('"');
+    }
+
+    private static void write(final StringBuilder sb, final Object value) {
+        if (value == null) {
+            sb.append("null");
+        }
+        else if (value instanceof String) {
+            writeString(sb, (String)value);
+        }
+        else if (value instanceof Number || value instanceof Boolean) {
+            final String text = value.toString();
+            if (value instanceof Double && (((Double)value).isNaN() || ((Double)value).isInfinite())
+                    || value instanceof Float && (((Float)value).isNaN() || ((Float)value).isInfinite())) {
+                throw new IllegalArgumentException(text + " is not a valid JSON number");
+            }
+            sb.append(text);
+        }
+        else if (value instanceof Map) {
+            sb.append('{');
+            boolean first = true;
+            for (final Map.Entry<?, ?> entry : ((Map<?, ?>)value).entrySet()) {
+                if (!first) {
+                    sb.append(',');
+                }
+                first = false;
+                writeString(sb, String.valueOf(entry.getKey()));
+                sb.append(':');
+                write(sb, entry.getValue());
+            }
+            sb.append('}');
+        }
+        else if (value instanceof Collection) {
+            sb.append('[');
+            boolean first = true;
+            for (final Object element : (Collection<?>)value) {
+                if (!first) {
+                    sb.append(',');
+                }
+                first = false;
+                write(sb, element);
+            }
+            sb.append(']');
+        }
+        else if (value.getClass().isArray()) {
+            sb.append('[');
+            final int length = Array.getLength(value);
+            for (int i = 0; i < length; i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                write(sb, Array.get(value, i));
+            }
+            sb.append(']');
+        }
+        else {
+            writeString(sb, value.toString());
+        }
+    }
+
+    private static class Parser {
+        private final String json;
+        private int pos;
+
+        Parser(final String json) {
+            this.json = json;
+        }
+
+        Object readValue() {
+            skipWhitespace();
+            final char c = peek();
+            switch (c) {
+                case '{':
+                    return readObject();
+                case '[':
+                    return readArray();
+                case '"':
+                    return readString();
+                case 't':
+                    expectLiteral("true");
+                    return Boolean.TRUE;
+                case 'f':
+                    expectLiteral("false");
+                    return Boolean.FALSE;
+                case 'n':
+                    expectLiteral("null");
+                    return null;
+                default:
+                    return readNumber();
+            }
+        }
+
+        Map<String, Object> readObject() {
+            expect('{');
+            final Map<String, Object> map = new LinkedHashMap<String, Object>();
+            skipWhitespace();
+            if (peek() == '}') {
+                pos++;
+                return map;
+            }
+            while (true) {
+                skipWhitespace();
+                final String key = readString();
+                skipWhitespace();
+                expect(':');
+                map.put(key, readValue());
+                skipWhitespace();
+                final char c = next();
+                if (c == '}') {
+                    return map;
+                }
+                if (c != ',') {
+                    throw error("Expected ',' or '}'");
+                }
+            }
+        }
+
+        List<Object> readArray() {
+            expect('[');
+            final List<Object> list = new ArrayList<Object>();
+            skipWhitespace();
+            if (peek() == ']') {
+                pos++;
+                return list;
+            }
+            while (true) {
+                list.add(readValue());
+                skipWhitespace();
+                final char c = next();
+                if (c == ']') {
+                    return list;
+                }
+                if (c != ',') {
+                    throw error("Expected ',' or ']'");
+                }
+            }
+        }
+
+        String readString() {
+            expect('"');
+            final int start = pos;
+            // fast path for strings without escapes
+            while (pos < json.length()) {
+                final char c = json.charAt(pos);
+                if (c == '"') {
+                    return json.substring(start, pos++);
+                }
+                if (c == '\\') {
+                    break;
+                }
+                pos++;
+            }
+
+            final StringBuilder sb = new StringBuilder(json.length() - start);
+            sb.append(json, start, pos);
+            while (true) {
+                final char c = next();
+                if (c == '"') {
+                    return sb.toString();
+                }
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                final char escape = next();
+                switch (escape) {
+                    case '"':
+                    case '\\':
+                    case '/':
+                        sb.append(escape);
+                        break;
+                    case 'b':
+                        sb.append('\b');
+                        break;
+                    case 'f':
+                        sb.append('\f');
+                        break;
+                    case 'n':
+                        sb.append('\n');
+                        break;
+                    case 'r':
+                        sb.append('\r');
+                        break;
+                    case 't':
+                        sb.append('\t');
+                        break;
+                    case 'u':
+                        if (pos + 4 > json.length()) {
+                            throw error("Unterminated escape sequence");
+                        }
+                        try {
+                            sb.append((char)Integer.parseInt(json.substring(pos, pos + 4), 16));
+                        }
+                        catch (final NumberFormatException e) {
+                            throw error("Malformed unicode escape");
+                        }
+                        pos += 4;
+                        break;
+                    default:
+                        throw error("Invalid escape sequence");
+                }
+            }
+        }
+
+        Double readNumber() {
+            final int start = pos;
+            while (pos < json.length()) {
+                final char c = json.charAt(pos);
+                if ((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E') {
+                    pos++;
+                }
+                else {
+                    break;
+                }
+            }
+            if (start == pos) {
+                throw error("Unexpected character");
+            }
+            try {
+                return Double.valueOf(json.substring(start, pos));
+            }
+            catch (final NumberFormatException e) {
+                throw error("Malformed number");
+            }
+        }
+
+        void skipWhitespace() {
+            while (pos < json.length()) {
+                final char c = json.charAt(pos);
+                if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                    return;
+                }
+                pos++;
+            }
+        }
+
+        private void expectLiteral(final String literal) {
+            if (!json.startsWith(literal, pos)) {
+                throw error("Unexpected character");
+            }
+            pos += literal.length();
+        }
+
+        private void expect(final char expected) {
+            if (next() != expected) {
+                pos--;
+                throw error("Expected '" + expected + "'");
+            }
+        }
+
+        private char peek() {
+            if (pos >= json.length()) {
+                throw error("Unexpected end of input");
+            }
+            return json.charAt(pos);
+        }
+
+        private char next() {
+            final char c = peek();
+            pos++;
+            return c;
+        }
+
+        IllegalArgumentException error(final String message) {
+            return new IllegalArgumentException(message + " at position " + pos + " in JSON: " + json);
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.pusher.client.util.internal;
+
+/**
+ * Pulls top-level string fields out of a JSON object without building a
+ * tree, so that inbound frames can be routed on their "event" and "channel"
+ * fields before any real JSON work is done. Everything else in the frame,
+ * including the data payload, is skipped over without being decoded.
+ */
+public class JsonHeaderScanner {
+
+    private JsonHeaderScanner() {
+    }
+
+    /**
+     * Scans a JSON object for the given top-level fields.
+     *
+     * @param json The JSON text, expected to be an object.
+     * @param fields The names of the fields to extract.
+     * @return The values of the fields in the order requested, with null for
+     *      fields which are absent or JSON null. Returns null if the text is
+     *      not a well formed object or one of the fields isn't a string, in
+     *      which case the caller should fall back to a full parse.
+     */
+    public static String[] scan(final String json, final String... fields) {
+        final String[] values = new String[fields.length];
+        final int length = json.length();
+        int found = 0;
+
+        try {
+            int pos = skipWhitespace(json, 0);
+            if (json.charAt(pos) != '{') {
+                return null;
+            }
+            pos = skipWhitespace(json, pos + 1);
+            if (json.charAt(pos) == '}') {
+                return values;
+            }
+
+            while (pos < length) {
+                if (json.charAt(pos) != '"') {
+                    return null;
+                }
+                final int keyEnd = endOfString(json, pos);
+                final int field = indexOfField(json, pos + 1, keyEnd, fields);
+
+                pos = skipWhitespace(json, keyEnd + 1);
+                if (json.charAt(pos) != ':') {
+                    return null;
+                }
+                pos = skipWhitespace(json, pos + 1);
+
+                if (field >= 0) {
+                    final char c = json.charAt(pos);
+                    if (c == '"') {
+                        final int valueEnd = endOfString(json, pos);
+                        values[field] = unescape(json, pos + 1, valueEnd);
+                        pos = valueEnd + 1;
+                    }
+                    else if (json.startsWith("null", pos)) {
+                        values[field] = null;
+                        pos += 4;
+                    }
+                    else {
+                        return null;
+                    }
+                    if (++found == fields.length) {
+                        return values;
+                    }
+                }
+                else {
+                    pos = skipValue(json, pos);
+                }
+
+                pos = skipWhitespace(json, pos);
+                final char c = json.charAt(pos);
+                if (c == '}') {
+                    return values;
+                }
+                if (c != ',') {
+                    return null;
+                }
+                pos = skipWhitespace(json, pos + 1);
+            }
+        }
+        catch (final IndexOutOfBoundsException e) {
+            // truncated input
+        }
+        catch (final NumberFormatException e) {
+            // bad unicode escape
+        }
+        return null;
+    }
+
+    /**
+     * Finds where the value of a top-level field starts, so that it can be
+     * parsed in place.
+     *
+     * @param json The JSON text, expected to be an object.
+     * @param field The name of the field.
+     * @return The position of the first character of the value, or -1 if
+     *      the field is absent or the text is not a well formed object.
+     */
+    public static int valueStart(final String json, final String field) {
+        final String[] fields = { field };
+        try {
+            int pos = skipWhitespace(json, 0);
+            if (json.charAt(pos) != '{') {
+                return -1;
+            }
+            pos = skipWhitespace(json, pos + 1);
+
+            while (json.charAt(pos) == '"') {
+                final int keyEnd = endOfString(json, pos);
+                final boolean match = indexOfField(json, pos + 1, keyEnd, fields) == 0;
+
+                pos = skipWhitespace(json, keyEnd + 1);
+                if (json.charAt(pos) != ':') {
+                    return -1;
+                }
+                pos = skipWhitespace(json, pos + 1);
+                if (match) {
+                    return pos;
+                }
+
+                pos = skipWhitespace(json, skipValue(json, pos));
+                if (json.charAt(pos) != ',') {
+                    return -1;
+                }
+                pos = skipWhitespace(json, pos + 1);
+            }
+        }
+        catch (final IndexOutOfBoundsException e) {
+            // truncated input
+        }
+        catch (final NumberFormatException e) {
+            // bad unicode escape
+        }
+        return -1;
+    }
+
+    private static int skipWhitespace(final String json, int pos) {
+        while (pos < json.length()) {
+            final char c = json.charAt(pos);
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                break;
+            }
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * @return the index of the closing quote of the string opening at start
+     */
+    private static int endOfString(final String json, final int start) {
+        int pos = start + 1;
+        while (true) {
+            final char c = json.charAt(pos);
+            if (c == '"') {
+                return pos;
+            }
+            pos += c == '\\' ? 2 : 1;
+        }
+    }
+
+    /**
+     * @return the position just past the value starting at pos
+     */
+    private static int skipValue(final String json, int pos) {
+        final char first = json.charAt(pos);
+        if (first == '"') {
+            return endOfString(json, pos) + 1;
+        }
+        if (first == '{' || first == '[') {
+            int depth = 0;
+            while (true) {
+                final char c = json.charAt(pos);
+                if (c == '"') {
+                    pos = endOfString(json, pos);
+                }
+                else if (c == '{' || c == '[') {
+                    depth++;
+                }
+                else if (c == '}' || c == ']') {
+                    if (--depth == 0) {
+                        return pos + 1;
+                    }
+                }
+                pos++;
+            }
+        }
+        // number, boolean or null
+        while (pos < json.length()) {
+            final char c = json.charAt(pos);
+            if (c == ',' || c == '}' || c == ']' || c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+                break;
+            }
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int indexOfField(final String json, final int start, final int end, final String[] fields) {
+        final boolean escaped = hasEscape(json, start, end);
+        final String key = escaped ? unescape(json, start, end) : null;
+        for (int i = 0; i < fields.length; i++) {
+            final String field = fields[i];
+            if (escaped) {
+                if (field.equals(key)) {
+                    return i;
+                }
+            }
+            else if (field.length() == end - start && json.regionMatches(start, field, 0, field.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean hasEscape(final String json, final int start, final int end) {
+        for (int pos = start; pos < end; pos++) {
+            if (json.charAt(pos) == '\\') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String unescape(final String json, final int start, final int end) {
+        if (!hasEscape(json, start, end)) {
+            return json.substring(start, end);
+        }
+
+        final StringBuilder sb = new StringBuilder(end - start);
+        int pos = start;
+        while (pos < end) {
+            final char c = json.charAt(pos++);
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            final char escape = json.charAt(pos++);
+            switch (escape) {
+                case 'b':
+                    sb.append('\b');
+                    break;
+                case 'f':
+                    sb.append('\f');
+                    break;
+                case 'n':
+                    sb.append('\n');
+                    break;
+                case 'r':
+                    sb.append('\r');
+                    break;
+                case 't':
+                    sb.append('\t');
+                    break;
+                case 'u':
+                    sb.append((char)Integer.parseInt(json.substring(pos, pos + 4), 16));
+                    pos += 4;
+                    break;
+                default:
+                    sb.append(escape);
+            }
+        }
+        return sb.toString();
+    }
+}
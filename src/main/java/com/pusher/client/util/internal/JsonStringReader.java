@@ -0,0 +1,85 @@
+package com.pusher.client.util.internal;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads the contents of a JSON string literal embedded in a larger JSON
+ * text, resolving escapes as it goes. Pusher sends event data as a JSON
+ * encoded string, so this lets the data be parsed straight out of the frame
+ * without first copying it into an unescaped String.
+ */
+public class JsonStringReader extends Reader {
+
+    private final String json;
+    private int pos;
+    private boolean done;
+
+    /**
+     * @param json The JSON text.
+     * @param start The position just past the opening quote of the string.
+     */
+    public JsonStringReader(final String json, final int start) {
+        this.json = json;
+        this.pos = start;
+    }
+
+    @Override
+    public int read(final char[] buffer, final int offset, final int length) throws IOException {
+        if (done) {
+            return -1;
+        }
+
+        int count = 0;
+        while (count < length) {
+            if (pos >= json.length()) {
+                throw new IOException("Unterminated string");
+            }
+            final char c = json.charAt(pos++);
+            if (c == '"') {
+                done = true;
+                break;
+            }
+            buffer[offset + count++] = c == '\\' ? readEscape() : c;
+        }
+        return count == 0 && done ? -1 : count;
+    }
+
+    private char readEscape() throws IOException {
+        if (pos >= json.length()) {
+            throw new IOException("Unterminated escape sequence");
+        }
+        final char escape = json.charAt(pos++);
+        switch (escape) {
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u':
+                if (pos + 4 > json.length()) {
+                    throw new IOException("Unterminated escape sequence");
+                }
+                try {
+                    final char c = (char)Integer.parseInt(json.substring(pos, pos + 4), 16);
+                    pos += 4;
+                    return c;
+                }
+                catch (final NumberFormatException e) {
+                    throw new IOException("Malformed unicode escape", e);
+                }
+            default:
+                return escape;
+        }
+    }
+
+    @Override
+    public void close() {
+        done = true;
+    }
+}
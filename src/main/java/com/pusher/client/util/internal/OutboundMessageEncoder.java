@@ -0,0 +1,104 @@
+package com.pusher.client.util.internal;
+
+import com.pusher.client.util.StreamingJsonCodec;
+
+/**
+ * Writes the fixed-shape protocol messages sent by the client straight into
+ * a reusable per-thread buffer, instead of building maps and serializing
+ * them through a codec. The output is the same JSON the maps would produce,
+ * field order included.
+ */
+public class OutboundMessageEncoder {
+
+    private static final String SUBSCRIBE_PREFIX = "{\"event\":\"pusher:subscribe\",\"data\":{\"channel\":";
+    private static final String UNSUBSCRIBE_PREFIX = "{\"event\":\"pusher:unsubscribe\",\"data\":{\"channel\":";
+
+    // buffers which grew past this, e.g. for a large client event, are not kept
+    private static final int MAX_RETAINED_CAPACITY = 16 * 1024;
+
+    private static final ThreadLocal<StringBuilder> BUFFER = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(256);
+        }
+    };
+
+    private OutboundMessageEncoder() {
+    }
+
+    /**
+     * @param channelName The name of the channel.
+     * @return A pusher:subscribe message for a public channel.
+     */
+    public static String subscribe(final String channelName) {
+        return subscribe(channelName, null, null);
+    }
+
+    /**
+     * @param channelName The name of the channel.
+     * @param auth The auth signature, or null for a public channel.
+     * @param channelData The presence channel data, or null.
+     * @return A pusher:subscribe message.
+     */
+    public static String subscribe(final String channelName, final String auth, final String channelData) {
+        final StringBuilder sb = acquire();
+        sb.append(SUBSCRIBE_PREFIX);
+        StreamingJsonCodec.writeString(sb, channelName);
+        if (auth != null) {
+            sb.append(",\"auth\":");
+            StreamingJsonCodec.writeString(sb, auth);
+        }
+        if (channelData != null) {
+            sb.append(",\"channel_data\":");
+            StreamingJsonCodec.writeString(sb, channelData);
+        }
+        sb.append("}}");
+        return release(sb);
+    }
+
+    /**
+     * @param channelName The name of the channel.
+     * @return A pusher:unsubscribe message.
+     */
+    public static String unsubscribe(final String channelName) {
+        final StringBuilder sb = acquire();
+        sb.append(UNSUBSCRIBE_PREFIX);
+        StreamingJsonCodec.writeString(sb, channelName);
+        sb.append("}}");
+        return release(sb);
+    }
+
+    /**
+     * @param eventName The name of the client event.
+     * @param channelName The name of the channel to trigger it on.
+     * @param data The event data, sent as a string, or null to leave it out.
+     * @return A client event message.
+     */
+    public static String clientEvent(final String eventName, final String channelName, final String data) {
+        final StringBuilder sb = acquire();
+        sb.append("{\"event\":");
+        StreamingJsonCodec.writeString(sb, eventName);
+        sb.append(",\"channel\":");
+        StreamingJsonCodec.writeString(sb, channelName);
+        if (data != null) {
+            sb.append(",\"data\":");
+            StreamingJsonCodec.writeString(sb, data);
+        }
+        sb.append('}');
+        return release(sb);
+    }
+
+    private static StringBuilder acquire() {
+        final StringBuilder sb = BUFFER.get();
+        sb.setLength(0);
+        return sb;
+    }
+
+    private static String release(final StringBuilder sb) {
+        final String message = sb.toString();
+        if (sb.capacity() > MAX_RETAINED_CAPACITY) {
+            BUFFER.remove();
+        }
+        return message;
+    }
+}
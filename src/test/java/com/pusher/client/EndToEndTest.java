@@ -31,6 +31,7 @@ import com.pusher.client.connection.websocket.WebSocketConnection;
 import com.pusher.client.connection.websocket.WebSocketListener;
 import com.pusher.client.util.DoNothingExecutor;
 import com.pusher.client.util.Factory;
+import com.pusher.client.util.GsonJsonCodec;
 import org.java_websocket.handshake.ServerHandshake;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -58,6 +59,7 @@ public class EndToEndTest {
 
     @Before
     public void setUp() throws Exception {
+        when(factory.getJsonCodec()).thenReturn(new GsonJsonCodec());
         pusherOptions = new PusherOptions().setAuthorizer(mockAuthorizer).setEncrypted(false);
 
         connection = new WebSocketConnection(pusherOptions.buildUrl(API_KEY), ACTIVITY_TIMEOUT, PONG_TIMEOUT, pusherOptions.getMaxReconnectionAttempts(),
@@ -71,6 +73,14 @@ public class EndToEndTest {
                 return null;
             }
         }).when(factory).queueOnEventThread(any(Runnable.class));
+        doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                final Runnable r = (Runnable) invocation.getArguments()[1];
+                r.run();
+                return null;
+            }
+        }).when(factory).queueOnChannelThread(anyString(), any(Runnable.class));
 
         when(factory.getTimers()).thenReturn(new DoNothingExecutor());
         when(factory.newWebSocketClientWrapper(any(URI.class), any(Proxy.class), any(WebSocketListener.class))).thenAnswer(
@@ -4,10 +4,14 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.pusher.client.util.JsonCodec;
+import com.pusher.client.util.StreamingJsonCodec;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -87,4 +91,100 @@ public class PusherEventTest {
         final PusherEvent e = GSON.fromJson("{\"channel\": \"my-channel\", \"event\":\"my-event\",\"data\":\"{\\\"fish\\\":\\\"chips\\\"}\", \"my_property\": null}", PusherEvent.class);
         assertNull(e.getProperty("my_property"));
     }
+
+    @Test
+    public void testFromJsonExtractsEnvelope() {
+        final PusherEvent e = PusherEvent.fromJson("{\"channel\": \"my-channel\", \"event\":\"my-event\",\"data\":\"{\\\"fish\\\":\\\"chips\\\"}\", \"user_id\": \"my-user-id\"}");
+        assertEquals("my-channel", e.getChannelName());
+        assertEquals("my-event", e.getEventName());
+        assertEquals("my-user-id", e.getUserId());
+        assertEquals("{\"fish\":\"chips\"}", e.getData());
+    }
+
+    @Test
+    public void testWithDataReplacesDataOnly() {
+        final PusherEvent e = PusherEvent.fromJson("{\"channel\": \"my-channel\", \"event\":\"my-event\",\"data\":\"secret\", \"my_property\": \"test\"}");
+        final PusherEvent copy = e.withData("plain");
+        assertEquals("plain", copy.getData());
+        assertEquals("secret", e.getData());
+        assertEquals("my-channel", copy.getChannelName());
+        assertEquals("test", (String)copy.getProperty("my_property"));
+    }
+
+    @Test
+    public void testFromJsonPropertiesAreMaterializedOnDemand() {
+        final PusherEvent e = PusherEvent.fromJson("{\"channel\": \"my-channel\", \"event\":\"my-event\",\"data\":\"{}\", \"my_property\": {\"test\": 42}}");
+        assertEquals("my-event", e.getEventName());
+        final Map<?, ?> m = (Map<?, ?>)e.getProperty("my_property");
+        assertEquals(Double.valueOf(42), (Double)m.get("test"));
+        assertEquals("my-channel", e.getProperty("channel"));
+    }
+
+    @Test
+    public void testFromJsonWithDataAppliesToProperties() {
+        final PusherEvent e = PusherEvent.fromJson("{\"channel\": \"my-channel\", \"event\":\"my-event\",\"data\":\"secret\"}").withData("plain");
+        assertEquals("plain", e.getData());
+        assertEquals("plain", e.getProperty("data"));
+        assertEquals("my-event", e.getEventName());
+    }
+
+    @Test
+    public void testFromJsonFallsBackWhenEnvelopeFieldIsNotAString() {
+        final PusherEvent e = PusherEvent.fromJson("{\"event\":\"my-event\",\"data\":{\"fish\":\"chips\"}}");
+        assertEquals("my-event", e.getEventName());
+        assertNull(e.getChannelName());
+        assertEquals("chips", ((Map<?, ?>)e.getProperty("data")).get("fish"));
+    }
+
+    @Test
+    public void testTypedDataIsDecodedFromEncodedString() {
+        final PusherEvent e = PusherEvent.fromJson("{\"event\":\"my-event\",\"data\":\"{\\\"fish\\\":\\\"chips \\\\u00e9\\\",\\\"count\\\":2}\",\"channel\":\"my-channel\"}");
+        final Fish fish = e.getData(Fish.class);
+        assertEquals("chips \u00e9", fish.fish);
+        assertEquals(2, fish.count);
+    }
+
+    @Test
+    public void testTypedDataIsDecodedFromObject() {
+        final PusherEvent e = PusherEvent.fromJson("{\"event\":\"my-event\",\"data\":{\"fish\":\"chips\",\"count\":3}}");
+        assertEquals(3, e.getData(Fish.class).count);
+    }
+
+    @Test
+    public void testTypedDataIsDecodedFromReplacedData() {
+        final PusherEvent e = PusherEvent.fromJson("{\"event\":\"my-event\",\"data\":\"secret\"}").withData("{\"fish\":\"plain\"}");
+        assertEquals("plain", e.getData(Fish.class).fish);
+    }
+
+    @Test
+    public void testTypedDataIsNullWithoutData() {
+        assertNull(PusherEvent.fromJson("{\"event\":\"my-event\"}").getData(Fish.class));
+    }
+
+    @Test
+    public void testTypedDataIsDecodedWithTheCodecOfTheClient() {
+        final List<String> decoded = new ArrayList<String>();
+        final JsonCodec codec = new StreamingJsonCodec() {
+            @Override
+            public <T> T decode(final String json, final Class<T> type) {
+                decoded.add(json);
+                return super.decode(json, type);
+            }
+        };
+        final PusherEvent e = PusherEvent.fromJson("{\"event\":\"my-event\",\"data\":\"{\\\"fish\\\":\\\"chips\\\"}\"}", codec);
+
+        assertEquals("chips", e.getData(Fish.class).fish);
+        assertEquals(Collections.singletonList("{\"fish\":\"chips\"}"), decoded);
+    }
+
+    @Test
+    public void testTypedDataIsNullForEmptyData() {
+        assertNull(PusherEvent.fromJson("{\"event\":\"my-event\",\"data\":\"\"}").getData(Fish.class));
+        assertNull(PusherEvent.fromJson("{\"event\":\"my-event\",\"data\":\"secret\"}").withData("").getData(Fish.class));
+    }
+
+    private static class Fish {
+        String fish;
+        int count;
+    }
 }
@@ -1,11 +1,15 @@
 package com.pusher.client.channel.impl;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.*;
 
 import com.pusher.client.channel.PusherEvent;
+import com.pusher.client.channel.SubscriptionEventListener;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -18,7 +22,9 @@ import org.mockito.stubbing.Answer;
 
 import com.pusher.client.channel.ChannelEventListener;
 import com.pusher.client.channel.ChannelState;
+import com.pusher.client.channel.TypedSubscriptionEventListener;
 import com.pusher.client.util.Factory;
+import com.pusher.client.util.GsonJsonCodec;
 
 @RunWith(MockitoJUnitRunner.class)
 public class ChannelImplTest {
@@ -33,6 +39,7 @@ public class ChannelImplTest {
 
     @Before
     public void setUp() {
+        when(factory.getJsonCodec()).thenReturn(new GsonJsonCodec());
         doAnswer(new Answer() {
             @Override
             public Object answer(InvocationOnMock invocation) throws Throwable {
@@ -41,6 +48,14 @@ public class ChannelImplTest {
                 return null;
             }
         }).when(factory).queueOnEventThread(any(Runnable.class));
+        doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                final Runnable r = (Runnable) invocation.getArguments()[1];
+                r.run();
+                return null;
+            }
+        }).when(factory).queueOnChannelThread(anyString(), any(Runnable.class));
 
         mockListener = getEventListener();
         channel = newInstance(getChannelName());
@@ -89,12 +104,17 @@ public class ChannelImplTest {
                 channel.toUnsubscribeMessage());
     }
 
+    @Test
+    public void testSubscribeAndUnsubscribeMessagesAreEncodedOnce() {
+        assertSame(channel.toSubscribeMessage(), channel.toSubscribeMessage());
+        assertSame(channel.toUnsubscribeMessage(), channel.toUnsubscribeMessage());
+    }
+
     @Test
     public void testInternalSubscriptionSucceededMessageIsTranslatedToASubscriptionSuccessfulCallback() {
         channel.bind(EVENT_NAME, mockListener);
-        channel.onMessage("pusher_internal:subscription_succeeded",
-                "{\"event\":\"pusher_internal:subscription_succeeded\",\"data\":\"{}\",\"channel\":\""
-                        + getChannelName() + "\"}");
+        channel.onMessage(PusherEvent.fromJson("{\"event\":\"pusher_internal:subscription_succeeded\",\"data\":\"{}\",\"channel\":\""
+                        + getChannelName() + "\"}"));
 
         verify(mockListener).onSubscriptionSucceeded(getChannelName());
     }
@@ -103,9 +123,8 @@ public class ChannelImplTest {
     public void testIsSubscribedMethod(){
         assertFalse(channel.isSubscribed());
         channel.bind(EVENT_NAME, mockListener);
-        channel.onMessage("pusher_internal:subscription_succeeded",
-                "{\"event\":\"pusher_internal:subscription_succeeded\",\"data\":\"{}\",\"channel\":\""
-                        + getChannelName() + "\"}");
+        channel.onMessage(PusherEvent.fromJson("{\"event\":\"pusher_internal:subscription_succeeded\",\"data\":\"{}\",\"channel\":\""
+                        + getChannelName() + "\"}"));
         assertTrue(channel.isSubscribed());
     }
 
@@ -113,10 +132,10 @@ public class ChannelImplTest {
     public void testDataIsExtractedFromMessageAndPassedToSingleListener() {
         // {"event":"my-event","data":"{\"some\":\"data\"}","channel":"my-channel"}
         channel.bind(EVENT_NAME, mockListener);
-        channel.onMessage(EVENT_NAME, "{\"event\":\"event1\",\"data\":\"{\\\"fish\\\":\\\"chips\\\"}\"}");
+        channel.onMessage(PusherEvent.fromJson("{\"event\":\"my-event\",\"data\":\"{\\\"fish\\\":\\\"chips\\\"}\"}"));
 
         verify(mockListener, times(1)).onEvent(argCaptor.capture());
-        assertEquals("event1", argCaptor.getValue().getEventName());
+        assertEquals("my-event", argCaptor.getValue().getEventName());
         assertEquals("{\"fish\":\"chips\"}", argCaptor.getValue().getData());
     }
     @Test
@@ -125,22 +144,66 @@ public class ChannelImplTest {
 
         channel.bind(EVENT_NAME, mockListener);
         channel.bind(EVENT_NAME, mockListener2);
-        channel.onMessage(EVENT_NAME, "{\"event\":\"event1\",\"data\":\"{\\\"fish\\\":\\\"chips\\\"}\"}");
+        channel.onMessage(PusherEvent.fromJson("{\"event\":\"my-event\",\"data\":\"{\\\"fish\\\":\\\"chips\\\"}\"}"));
 
         verify(mockListener).onEvent(argCaptor.capture());
-        assertEquals("event1", argCaptor.getValue().getEventName());
+        assertEquals("my-event", argCaptor.getValue().getEventName());
         assertEquals("{\"fish\":\"chips\"}", argCaptor.getValue().getData());
 
         verify(mockListener2).onEvent(argCaptor.capture());
-        assertEquals("event1", argCaptor.getValue().getEventName());
+        assertEquals("my-event", argCaptor.getValue().getEventName());
         assertEquals("{\"fish\":\"chips\"}", argCaptor.getValue().getData());
     }
 
+    @Test
+    public void testEventIsDispatchedToAllListenersAsOneTask() {
+        channel.bind(EVENT_NAME, mockListener);
+        channel.bind(EVENT_NAME, getEventListener());
+        channel.bind(EVENT_NAME, getEventListener());
+        channel.onMessage(PusherEvent.fromJson("{\"event\":\"my-event\",\"data\":\"{\\\"fish\\\":\\\"chips\\\"}\"}"));
+
+        verify(factory, times(1)).queueOnChannelThread(eq(getChannelName()), any(Runnable.class));
+    }
+
+    @Test
+    public void testListenerWhichThrowsDoesNotStopOtherListeners() {
+        final ChannelEventListener mockListener2 = getEventListener();
+        doThrow(new RuntimeException("boom")).when(mockListener).onEvent(any(PusherEvent.class));
+
+        channel.bind(EVENT_NAME, mockListener);
+        channel.bind(EVENT_NAME, mockListener2);
+        channel.onMessage(PusherEvent.fromJson("{\"event\":\"my-event\",\"data\":\"{\\\"fish\\\":\\\"chips\\\"}\"}"));
+
+        verify(mockListener).onEvent(any(PusherEvent.class));
+        verify(mockListener2).onEvent(any(PusherEvent.class));
+    }
+
+    @Test
+    public void testListenerRegistryKeepsBindOrderAndIgnoresDuplicates() {
+        final ChannelEventListener second = getEventListener();
+        final ChannelEventListener third = getEventListener();
+
+        channel.bind(EVENT_NAME, mockListener);
+        channel.bind(EVENT_NAME, second);
+        channel.bind(EVENT_NAME, third);
+        channel.bind(EVENT_NAME, mockListener);
+        final SubscriptionEventListener[] snapshot = channel.getInterestedListeners(EVENT_NAME);
+        channel.unbind(EVENT_NAME, second);
+
+        assertArrayEquals(new SubscriptionEventListener[] { mockListener, second, third }, snapshot);
+        assertArrayEquals(new SubscriptionEventListener[] { mockListener, third },
+                channel.getInterestedListeners(EVENT_NAME));
+
+        channel.unbind(EVENT_NAME, mockListener);
+        channel.unbind(EVENT_NAME, third);
+        assertNull(channel.getInterestedListeners(EVENT_NAME));
+    }
+
     @Test
     public void testEventIsNotPassedOnIfThereAreNoMatchingListeners() {
 
         channel.bind(EVENT_NAME, mockListener);
-        channel.onMessage("DifferentEventName", "{\"event\":\"event1\",\"data\":{\"fish\":\"chips\"}}");
+        channel.onMessage(PusherEvent.fromJson("{\"event\":\"DifferentEventName\",\"data\":{\"fish\":\"chips\"}}"));
 
         verify(mockListener, never()).onEvent(any(PusherEvent.class));
     }
@@ -150,11 +213,48 @@ public class ChannelImplTest {
 
         channel.bind(EVENT_NAME, mockListener);
         channel.unbind(EVENT_NAME, mockListener);
-        channel.onMessage(EVENT_NAME, "{\"event\":\"event1\",\"data\":\"{\\\"fish\\\":\\\"chips\\\"}\"}");
+        channel.onMessage(PusherEvent.fromJson("{\"event\":\"my-event\",\"data\":\"{\\\"fish\\\":\\\"chips\\\"}\"}"));
 
         verify(mockListener, never()).onEvent(any(PusherEvent.class));
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testTypedListenerReceivesDecodedData() {
+        final TypedSubscriptionEventListener<Fish> typedListener = mock(TypedSubscriptionEventListener.class);
+        final ArgumentCaptor<Fish> fishCaptor = ArgumentCaptor.forClass(Fish.class);
+
+        channel.bind(EVENT_NAME, Fish.class, typedListener);
+        channel.onMessage(PusherEvent.fromJson("{\"event\":\"my-event\",\"data\":\"{\\\"fish\\\":\\\"chips\\\"}\"}"));
+
+        verify(typedListener).onEvent(any(PusherEvent.class), fishCaptor.capture());
+        assertEquals("chips", fishCaptor.getValue().fish);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testTypedListenerIsNotifiedOfUndecodableData() {
+        final TypedSubscriptionEventListener<Fish> typedListener = mock(TypedSubscriptionEventListener.class);
+
+        channel.bind(EVENT_NAME, Fish.class, typedListener);
+        channel.onMessage(PusherEvent.fromJson("{\"event\":\"my-event\",\"data\":\"[1, 2]\"}"));
+
+        verify(typedListener, never()).onEvent(any(PusherEvent.class), any(Fish.class));
+        verify(typedListener).onError(anyString(), any(Exception.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testTypedListenerIsNotPassedEventAfterUnbind() {
+        final TypedSubscriptionEventListener<Fish> typedListener = mock(TypedSubscriptionEventListener.class);
+
+        channel.bind(EVENT_NAME, Fish.class, typedListener);
+        channel.unbind(EVENT_NAME, Fish.class, typedListener);
+        channel.onMessage(PusherEvent.fromJson("{\"event\":\"my-event\",\"data\":\"{\\\"fish\\\":\\\"chips\\\"}\"}"));
+
+        verify(typedListener, never()).onEvent(any(PusherEvent.class), any(Fish.class));
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testBindWithNullEventNameThrowsException() {
         channel.bind(null, mockListener);
@@ -245,4 +345,8 @@ public class ChannelImplTest {
         final ChannelEventListener listener = mock(ChannelEventListener.class);
         return listener;
     }
+
+    private static class Fish {
+        String fish;
+    }
 }
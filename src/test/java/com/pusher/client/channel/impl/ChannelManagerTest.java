@@ -20,10 +20,15 @@ import com.pusher.client.channel.PresenceChannel;
 import com.pusher.client.channel.PresenceChannelEventListener;
 import com.pusher.client.channel.PrivateChannel;
 import com.pusher.client.channel.PrivateChannelEventListener;
+import com.pusher.client.channel.PusherEvent;
 import com.pusher.client.connection.ConnectionState;
 import com.pusher.client.connection.ConnectionStateChange;
+import com.pusher.client.connection.ConnectionEventListener;
+import com.pusher.client.connection.impl.ConnectionPool;
 import com.pusher.client.connection.impl.InternalConnection;
 import com.pusher.client.util.Factory;
+import com.pusher.client.util.GsonJsonCodec;
+import java.util.Collections;
 import java.util.concurrent.Executors;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -54,6 +59,7 @@ public class ChannelManagerTest {
     @Before
     public void setUp() throws AuthorizationFailureException {
 
+        when(factory.getJsonCodec()).thenReturn(new GsonJsonCodec());
         doAnswer(new Answer() {
             @Override
             public Object answer(InvocationOnMock invocation) throws Throwable {
@@ -62,6 +68,14 @@ public class ChannelManagerTest {
                 return null;
             }
         }).when(factory).queueOnEventThread(any(Runnable.class));
+        doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                final Runnable r = (Runnable) invocation.getArguments()[1];
+                r.run();
+                return null;
+            }
+        }).when(factory).queueOnChannelThread(anyString(), any(Runnable.class));
         when(mockInternalChannel.getName()).thenReturn(CHANNEL_NAME);
         when(mockInternalChannel.toSubscribeMessage()).thenReturn(OUTGOING_SUBSCRIBE_MESSAGE);
         when(mockInternalChannel.toUnsubscribeMessage()).thenReturn(OUTGOING_UNSUBSCRIBE_MESSAGE);
@@ -199,6 +213,56 @@ public class ChannelManagerTest {
         verify(mockConnection, never()).sendMessage(anyString());
     }
 
+    @Test
+    public void testSubscribeMessageForAnotherSocketLeavesChannelStateAlone() {
+        channelManager.subscribeTo(mockInternalChannel, mockEventListener);
+        reset(mockInternalChannel);
+        when(mockInternalChannel.toSubscribeMessage("333.444")).thenReturn(OUTGOING_SUBSCRIBE_MESSAGE);
+
+        assertEquals(Collections.singleton(CHANNEL_NAME), channelManager.getChannelNames());
+        assertEquals(OUTGOING_SUBSCRIBE_MESSAGE, channelManager.toSubscribeMessage(CHANNEL_NAME, "333.444"));
+        assertNull(channelManager.toSubscribeMessage("unknown-channel", "333.444"));
+        verify(mockInternalChannel, never()).updateState(any(ChannelState.class));
+    }
+
+    @Test
+    public void testSubscribeMessageForAnotherSocketThatFailsToAuthorizeFailsTheChannel() {
+        final AuthorizationFailureException exception = new AuthorizationFailureException(
+                "Unable to contact auth server");
+        channelManager.subscribeTo(mockPrivateChannel, mockPrivateChannelEventListener);
+        when(mockPrivateChannel.toSubscribeMessage("333.444")).thenThrow(exception);
+
+        assertNull(channelManager.toSubscribeMessage(PRIVATE_CHANNEL_NAME, "333.444"));
+        verify(mockPrivateChannelEventListener).onAuthenticationFailure("Unable to contact auth server", exception);
+        assertTrue(channelManager.getChannelNames().isEmpty());
+    }
+
+    @Test
+    public void testChannelsOfAPoolAreSubscribedOnTheirOwnConnection() {
+        final ConnectionPool pool = mock(ConnectionPool.class);
+        final InternalConnection owner = mock(InternalConnection.class);
+        final InternalConnection other = mock(InternalConnection.class);
+        when(pool.connectionsFor(CHANNEL_NAME)).thenReturn(Collections.singletonList(owner));
+        when(pool.toSubscribeMessage(owner, mockInternalChannel)).thenReturn(OUTGOING_SUBSCRIBE_MESSAGE);
+        when(owner.getState()).thenReturn(ConnectionState.CONNECTED);
+        when(other.getState()).thenReturn(ConnectionState.CONNECTED);
+        final ChannelManager manager = new ChannelManager(factory);
+        manager.setConnection(pool);
+
+        manager.subscribeTo(mockInternalChannel, mockEventListener);
+        verify(owner).sendMessage(OUTGOING_SUBSCRIBE_MESSAGE);
+        verify(pool, never()).bind(any(ConnectionState.class), any(ConnectionEventListener.class));
+
+        manager.resubscribeChannelsOn(other);
+        manager.resubscribeChannelsOn(owner);
+        verify(other, never()).sendMessage(anyString());
+        verify(owner, times(2)).sendMessage(OUTGOING_SUBSCRIBE_MESSAGE);
+        assertEquals(Collections.singleton(CHANNEL_NAME), manager.getChannelNames(owner));
+
+        manager.unsubscribeFrom(CHANNEL_NAME);
+        verify(owner).sendMessage(OUTGOING_UNSUBSCRIBE_MESSAGE);
+    }
+
     @Test
     public void testSubscriptionsAreResubscribedEveryTimeTheConnectionIsReestablished() {
         when(mockConnection.getState()).thenReturn(ConnectionState.DISCONNECTED);
@@ -244,26 +308,35 @@ public class ChannelManagerTest {
     @Test
     public void testReceiveMessageForSubscribedChannelPassesItToChannel() {
         channelManager.subscribeTo(mockInternalChannel, mockEventListener, "my-event");
-        channelManager.onMessage("my-event", "{\"event\":\"my-event\",\"data\":{\"fish\":\"chips\"},\"channel\":\""
+        final PusherEvent event = PusherEvent.fromJson("{\"event\":\"my-event\",\"data\":{\"fish\":\"chips\"},\"channel\":\""
                 + CHANNEL_NAME + "\"}");
+        channelManager.onMessage(event);
+
+        verify(mockInternalChannel).onMessage(event);
+    }
 
-        verify(mockInternalChannel).onMessage("my-event",
-                "{\"event\":\"my-event\",\"data\":{\"fish\":\"chips\"},\"channel\":\"" + CHANNEL_NAME + "\"}");
+    @Test
+    public void testReceiveSubscriptionSucceededForAlreadySubscribedChannelIsIgnored() {
+        channelManager.subscribeTo(mockInternalChannel, mockEventListener);
+        when(mockInternalChannel.isSubscribed()).thenReturn(true);
+        channelManager.onMessage(PusherEvent.fromJson("{\"event\":\"pusher_internal:subscription_succeeded\",\"data\":\"{}\",\"channel\":\""
+                + CHANNEL_NAME + "\"}"));
+
+        verify(mockInternalChannel, never()).onMessage(any(PusherEvent.class));
     }
 
     @Test
     public void testReceiveMessageWithNoMatchingChannelIsIgnoredAndDoesNotThrowException() {
         channelManager.subscribeTo(mockInternalChannel, mockEventListener, "my-event");
-        channelManager.onMessage("my-event", "{\"event\":\"my-event\",\"data\":{\"fish\":\"chips\"},\"channel\":\""
-                + "DIFFERENT_CHANNEL_NAME" + "\"}");
+        channelManager.onMessage(PusherEvent.fromJson("{\"event\":\"my-event\",\"data\":{\"fish\":\"chips\"},\"channel\":\""
+                + "DIFFERENT_CHANNEL_NAME" + "\"}"));
 
-        verify(mockInternalChannel, never()).onMessage(anyString(), anyString());
+        verify(mockInternalChannel, never()).onMessage(any(PusherEvent.class));
     }
 
     @Test
     public void testReceiveMessageWithNoChannelIsIgnoredAndDoesNotThrowException() {
-        channelManager.onMessage("connection_established",
-                "{\"event\":\"connection_established\",\"data\":{\"socket_id\":\"21098.967780\"}}");
+        channelManager.onMessage(PusherEvent.fromJson("{\"event\":\"connection_established\",\"data\":{\"socket_id\":\"21098.967780\"}}"));
     }
 
     @Test
@@ -300,10 +373,10 @@ public class ChannelManagerTest {
     public void testReceiveMessageAfterUnsubscribeDoesNotPassItToChannel() {
         channelManager.subscribeTo(mockInternalChannel, mockEventListener, "my-event");
         channelManager.unsubscribeFrom(CHANNEL_NAME);
-        channelManager.onMessage("my-event", "{\"event\":\"my-event\",\"data\":{\"fish\":\"chips\"},\"channel\":\""
-                + CHANNEL_NAME + "\"}");
+        channelManager.onMessage(PusherEvent.fromJson("{\"event\":\"my-event\",\"data\":{\"fish\":\"chips\"},\"channel\":\""
+                + CHANNEL_NAME + "\"}"));
 
-        verify(mockInternalChannel, never()).onMessage(anyString(), anyString());
+        verify(mockInternalChannel, never()).onMessage(any(PusherEvent.class));
     }
 
     @Test
@@ -0,0 +1,61 @@
+package com.pusher.client.channel.impl;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import com.pusher.client.channel.BufferOverflowPolicy;
+
+public class ClientEventBufferTest {
+
+    @Test
+    public void drainsInOrder() {
+        final ClientEventBuffer buffer = new ClientEventBuffer(3, 0, BufferOverflowPolicy.REJECT);
+        buffer.offer("a", 0);
+        buffer.offer("b", 1);
+
+        assertEquals(Arrays.asList("a", "b"), buffer.drain(2));
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void dropsEventsOlderThanTheMaximumAge() {
+        final ClientEventBuffer buffer = new ClientEventBuffer(3, 10, BufferOverflowPolicy.REJECT);
+        buffer.offer("a", 0);
+        buffer.offer("b", 5);
+
+        assertEquals(Collections.singletonList("b"), buffer.drain(12));
+    }
+
+    @Test
+    public void appliesTheOverflowPolicyWhenFull() {
+        final ClientEventBuffer oldest = new ClientEventBuffer(2, 0, BufferOverflowPolicy.DROP_OLDEST);
+        final ClientEventBuffer newest = new ClientEventBuffer(2, 0, BufferOverflowPolicy.DROP_NEWEST);
+        final ClientEventBuffer reject = new ClientEventBuffer(2, 0, BufferOverflowPolicy.REJECT);
+        for (final String message : new String[] { "a", "b" }) {
+            oldest.offer(message, 0);
+            newest.offer(message, 0);
+            reject.offer(message, 0);
+        }
+
+        assertTrue(oldest.offer("c", 0));
+        assertTrue(newest.offer("c", 0));
+        assertFalse(reject.offer("c", 0));
+
+        assertEquals(Arrays.asList("b", "c"), oldest.drain(0));
+        assertEquals(Arrays.asList("a", "b"), newest.drain(0));
+        assertEquals(Arrays.asList("a", "b"), reject.drain(0));
+    }
+
+    @Test
+    public void makesRoomByExpiringBeforeOverflowing() {
+        final ClientEventBuffer buffer = new ClientEventBuffer(1, 10, BufferOverflowPolicy.REJECT);
+        buffer.offer("a", 0);
+
+        assertTrue(buffer.offer("b", 20));
+        assertEquals(Collections.singletonList("b"), buffer.drain(20));
+    }
+}
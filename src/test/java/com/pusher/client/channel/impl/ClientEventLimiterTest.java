@@ -0,0 +1,121 @@
+package com.pusher.client.channel.impl;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import com.pusher.client.connection.ConnectionState;
+import com.pusher.client.connection.impl.InternalConnection;
+import com.pusher.client.util.DoNothingExecutor;
+import com.pusher.client.util.Factory;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ClientEventLimiterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final Object CHANNEL = "private-a";
+
+    @Mock
+    private Factory factory;
+    @Mock
+    private InternalConnection connection;
+
+    private ClientEventLimiter limiter;
+
+    @Before
+    public void setUp() {
+        when(factory.getTimers()).thenReturn(new DoNothingExecutor());
+        when(connection.getState()).thenReturn(ConnectionState.CONNECTED);
+        limiter = new ClientEventLimiter(2, 2, factory, 0);
+    }
+
+    @Test
+    public void sendsUpToTheBurstStraightAway() {
+        limiter.send(connection, CHANNEL, "private-a cursor", "1", 0);
+        limiter.send(connection, CHANNEL, "private-a cursor", "2", 0);
+        limiter.send(connection, CHANNEL, "private-a cursor", "3", 0);
+
+        verify(connection).sendMessage("1");
+        verify(connection).sendMessage("2");
+        verify(connection, never()).sendMessage("3");
+        assertEquals(1, limiter.waiting());
+    }
+
+    @Test
+    public void keepsOnlyTheLatestWaitingEventOfEachKey() {
+        limiter.send(connection, CHANNEL, "private-a cursor", "1", 0);
+        limiter.send(connection, CHANNEL, "private-a cursor", "2", 0);
+        limiter.send(connection, CHANNEL, "private-a cursor", "3", 0);
+        limiter.send(connection, CHANNEL, "private-a typing", "4", 0);
+        limiter.send(connection, CHANNEL, "private-a cursor", "5", 0);
+        limiter.send(connection, CHANNEL, null, "6", 0);
+
+        // the bucket is full again after a second
+        limiter.drain(SECOND);
+
+        final InOrder inOrder = inOrder(connection);
+        inOrder.verify(connection).sendMessage("1");
+        inOrder.verify(connection).sendMessage("2");
+        inOrder.verify(connection).sendMessage("5");
+        inOrder.verify(connection).sendMessage("4");
+        verify(connection, never()).sendMessage("3");
+        assertEquals(1, limiter.waiting());
+
+        limiter.drain(SECOND + SECOND / 2);
+        verify(connection).sendMessage("6");
+        assertEquals(0, limiter.waiting());
+    }
+
+    @Test
+    public void schedulesADrainForWhenATokenIsAvailable() {
+        final DoNothingExecutor timers = spy(new DoNothingExecutor());
+        when(factory.getTimers()).thenReturn(timers);
+        limiter.send(connection, CHANNEL, "private-a cursor", "1", 0);
+        limiter.send(connection, CHANNEL, "private-a cursor", "2", 0);
+        limiter.send(connection, CHANNEL, "private-a cursor", "3", 0);
+        limiter.send(connection, CHANNEL, "private-a typing", "4", 0);
+
+        verify(timers, times(1)).schedule(any(Runnable.class), eq(SECOND / 2), eq(TimeUnit.NANOSECONDS));
+    }
+
+    @Test
+    public void holdsEventsWhileTheirConnectionIsDown() {
+        limiter.send(connection, CHANNEL, "private-a cursor", "1", 0);
+        limiter.send(connection, CHANNEL, "private-a cursor", "2", 0);
+        limiter.send(connection, CHANNEL, "private-a typing", "3", 0);
+        when(connection.getState()).thenReturn(ConnectionState.RECONNECTING);
+
+        limiter.drain(SECOND);
+
+        verify(connection, never()).sendMessage("3");
+        assertEquals(1, limiter.waiting());
+    }
+
+    @Test
+    public void withdrawsTheWaitingEventsOfAChannel() {
+        final Object other = "private-b";
+        limiter.send(connection, CHANNEL, "private-a cursor", "1", 0);
+        limiter.send(connection, CHANNEL, "private-a cursor", "2", 0);
+        limiter.send(connection, CHANNEL, "private-a cursor", "3", 0);
+        limiter.send(connection, other, "private-b cursor", "4", 0);
+        limiter.send(connection, CHANNEL, null, "5", 0);
+
+        assertEquals(Arrays.asList("3", "5"), limiter.withdraw(CHANNEL));
+
+        limiter.drain(SECOND);
+        verify(connection).sendMessage("4");
+        verify(connection, never()).sendMessage("3");
+        verify(connection, never()).sendMessage("5");
+        assertEquals(0, limiter.waiting());
+    }
+}
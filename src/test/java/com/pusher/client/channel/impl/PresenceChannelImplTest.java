@@ -19,6 +19,7 @@ import org.mockito.runners.MockitoJUnitRunner;
 import com.google.gson.Gson;
 
 import com.pusher.client.channel.ChannelEventListener;
+import com.pusher.client.channel.PusherEvent;
 import com.pusher.client.channel.ChannelState;
 import com.pusher.client.channel.PresenceChannelEventListener;
 import com.pusher.client.channel.PrivateChannelEventListener;
@@ -64,8 +65,7 @@ public class PresenceChannelImplTest extends PrivateChannelImplTest {
     @Test
     public void testStoresCorrectUser() {
         channel.toSubscribeMessage();
-        channel.onMessage("pusher_internal:subscription_succeeded",
-        "{\"event\":\"pusher_internal:subscription_succeeded\",\"data\":\"{\\\"presence\\\":{\\\"count\\\":1,\\\"ids\\\":[\\\"5116a4519575b\\\"],\\\"hash\\\":{\\\"5116a4519575b\\\":{\\\"name\\\":\\\"Phil Leggetter\\\",\\\"twitter_id\\\":\\\"@leggetter\\\"}}}}\",\"channel\":\"presence-myChannel\"}");
+        channel.onMessage(PusherEvent.fromJson("{\"event\":\"pusher_internal:subscription_succeeded\",\"data\":\"{\\\"presence\\\":{\\\"count\\\":1,\\\"ids\\\":[\\\"5116a4519575b\\\"],\\\"hash\\\":{\\\"5116a4519575b\\\":{\\\"name\\\":\\\"Phil Leggetter\\\",\\\"twitter_id\\\":\\\"@leggetter\\\"}}}}\",\"channel\":\"presence-myChannel\"}"));
         assertEquals(USER_ID, ((PresenceChannelImpl)channel).getMe().getId());
     }
 
@@ -73,8 +73,7 @@ public class PresenceChannelImplTest extends PrivateChannelImplTest {
     @Test
     public void testIsSubscribedMethod(){
         assertFalse(channel.isSubscribed());
-        channel.onMessage("pusher_internal:subscription_succeeded",
-                "{\"event\":\"pusher_internal:subscription_succeeded\",\"data\":\"{\\\"presence\\\":{\\\"count\\\":1,\\\"ids\\\":[\\\"5116a4519575b\\\"],\\\"hash\\\":{\\\"5116a4519575b\\\":{\\\"name\\\":\\\"Phil Leggetter\\\",\\\"twitter_id\\\":\\\"@leggetter\\\"}}}}\",\"channel\":\"presence-myChannel\"}");
+        channel.onMessage(PusherEvent.fromJson("{\"event\":\"pusher_internal:subscription_succeeded\",\"data\":\"{\\\"presence\\\":{\\\"count\\\":1,\\\"ids\\\":[\\\"5116a4519575b\\\"],\\\"hash\\\":{\\\"5116a4519575b\\\":{\\\"name\\\":\\\"Phil Leggetter\\\",\\\"twitter_id\\\":\\\"@leggetter\\\"}}}}\",\"channel\":\"presence-myChannel\"}"));
         assertTrue(channel.isSubscribed());
     }
 
@@ -83,7 +82,7 @@ public class PresenceChannelImplTest extends PrivateChannelImplTest {
         final String eventName = "pusher_internal:subscription_succeeded";
         final Map<String, Object> data = new LinkedHashMap<String, Object>();
 
-        channel.onMessage(eventName, eventJson(eventName, data, getChannelName()));
+        channel.onMessage(PusherEvent.fromJson(eventJson(eventName, data, getChannelName())));
 
         final InOrder inOrder = inOrder(mockEventListener);
         inOrder.verify(mockEventListener).onError(eq(ERROR_NO_PRESENCE_DATA), eq(null));
@@ -111,7 +110,7 @@ public class PresenceChannelImplTest extends PrivateChannelImplTest {
         final Map<String, Object> data = new LinkedHashMap<String, Object>();
         data.put("presence", presence);
 
-        channel.onMessage(eventName, eventJson(eventName, data, getChannelName()));
+        channel.onMessage(PusherEvent.fromJson(eventJson(eventName, data, getChannelName())));
 
         final InOrder inOrder = inOrder(mockEventListener);
         inOrder.verify(mockEventListener).onSubscriptionSucceeded(getChannelName());
@@ -138,7 +137,7 @@ public class PresenceChannelImplTest extends PrivateChannelImplTest {
 
         final String eventName = "pusher_internal:member_added";
 
-        channel.onMessage(eventName, eventJson(eventName, data, getChannelName()));
+        channel.onMessage(PusherEvent.fromJson(eventJson(eventName, data, getChannelName())));
 
         final ArgumentCaptor<User> argument = ArgumentCaptor.forClass(User.class);
         verify(mockEventListener).userSubscribed(eq(getChannelName()), argument.capture());
@@ -174,7 +173,7 @@ public class PresenceChannelImplTest extends PrivateChannelImplTest {
 
         final String eventName = "pusher_internal:member_added";
 
-        channel.onMessage(eventName, eventJson(eventName, data, getChannelName()));
+        channel.onMessage(PusherEvent.fromJson(eventJson(eventName, data, getChannelName())));
     }
 
     @Test
@@ -187,7 +186,7 @@ public class PresenceChannelImplTest extends PrivateChannelImplTest {
 
         final String eventName = "pusher_internal:member_removed";
 
-        channel.onMessage(eventName, eventJson(eventName, data, getChannelName()));
+        channel.onMessage(PusherEvent.fromJson(eventJson(eventName, data, getChannelName())));
 
         final ArgumentCaptor<User> argument = ArgumentCaptor.forClass(User.class);
         verify(mockEventListener).userUnsubscribed(eq(getChannelName()), argument.capture());
@@ -4,19 +4,24 @@ import static org.junit.Assert.*;
 import static org.mockito.Matchers.*;
 import static org.mockito.Mockito.*;
 
+import java.util.Collections;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
 import com.pusher.client.AuthorizationFailureException;
 import com.pusher.client.Authorizer;
+import com.pusher.client.channel.BufferOverflowPolicy;
 import com.pusher.client.channel.ChannelEventListener;
 import com.pusher.client.channel.ChannelState;
 import com.pusher.client.channel.PrivateChannelEventListener;
 import com.pusher.client.connection.ConnectionState;
 import com.pusher.client.connection.impl.InternalConnection;
+import com.pusher.client.util.DoNothingExecutor;
 
 @RunWith(MockitoJUnitRunner.class)
 public class PrivateChannelImplTest extends ChannelImplTest {
@@ -117,6 +122,16 @@ public class PrivateChannelImplTest extends ChannelImplTest {
         channel.toSubscribeMessage();
     }
 
+    @Test
+    @Override
+    public void testSubscribeAndUnsubscribeMessagesAreEncodedOnce() {
+        // the subscribe message carries a fresh auth signature every time
+        channel.toSubscribeMessage();
+        channel.toSubscribeMessage();
+        verify(mockAuthorizer, times(2)).authorize(eq(getChannelName()), anyString());
+        assertSame(channel.toUnsubscribeMessage(), channel.toUnsubscribeMessage());
+    }
+
     @Test
     public void testTriggerWithValidEventSendsMessage() {
         when(mockConnection.getState()).thenReturn(ConnectionState.CONNECTED);
@@ -196,6 +211,77 @@ public class PrivateChannelImplTest extends ChannelImplTest {
         ((PrivateChannelImpl)channel).trigger("client-myEvent", "{\"fish\":\"chips\"}");
     }
 
+    @Test
+    public void testTriggerWhileReconnectingIsBufferedAndSentOnceSubscribed() {
+        when(factory.newClientEventBuffer()).thenReturn(new ClientEventBuffer(10, 0, BufferOverflowPolicy.REJECT));
+        final PrivateChannelImpl channel = (PrivateChannelImpl)newInstance(getChannelName());
+        channel.updateState(ChannelState.SUBSCRIBED);
+        when(mockConnection.getState()).thenReturn(ConnectionState.RECONNECTING);
+
+        channel.trigger("client-first", "1");
+        channel.updateState(ChannelState.SUBSCRIBE_SENT);
+        channel.trigger("client-second", "2");
+        verify(mockConnection, never()).sendMessage(anyString());
+
+        when(mockConnection.getState()).thenReturn(ConnectionState.CONNECTED);
+        channel.updateState(ChannelState.SUBSCRIBED);
+
+        final InOrder inOrder = inOrder(mockConnection);
+        inOrder.verify(mockConnection).sendMessage(
+                "{\"event\":\"client-first\",\"channel\":\"" + getChannelName() + "\",\"data\":\"1\"}");
+        inOrder.verify(mockConnection).sendMessage(
+                "{\"event\":\"client-second\",\"channel\":\"" + getChannelName() + "\",\"data\":\"2\"}");
+    }
+
+    @Test
+    public void testRateLimitedEventsAreBufferedWhenTheChannelIsResubscribed() {
+        when(factory.getTimers()).thenReturn(new DoNothingExecutor());
+        final ClientEventLimiter limiter = new ClientEventLimiter(1, 1, factory, 0);
+        when(factory.getClientEventLimiter()).thenReturn(limiter);
+        when(factory.newClientEventBuffer()).thenReturn(new ClientEventBuffer(10, 0, BufferOverflowPolicy.REJECT));
+        final PrivateChannelImpl channel = (PrivateChannelImpl)newInstance(getChannelName());
+        when(mockConnection.getState()).thenReturn(ConnectionState.CONNECTED);
+        channel.updateState(ChannelState.SUBSCRIBED);
+
+        channel.trigger("client-first", "1");
+        channel.trigger("client-second", "2");
+        assertEquals(1, limiter.waiting());
+
+        // the connection drops while the second event waits for a token
+        when(mockConnection.getState()).thenReturn(ConnectionState.RECONNECTING);
+        channel.updateState(ChannelState.SUBSCRIBE_SENT);
+        assertEquals(0, limiter.waiting());
+
+        when(mockConnection.getState()).thenReturn(ConnectionState.CONNECTED);
+        channel.updateState(ChannelState.SUBSCRIBED);
+        assertEquals(Collections.singletonList(
+                "{\"event\":\"client-second\",\"channel\":\"" + getChannelName() + "\",\"data\":\"2\"}"),
+                limiter.withdraw(channel));
+        verify(mockConnection, times(1)).sendMessage(anyString());
+    }
+
+    @Test
+    public void testTriggerWhenClientEventBufferIsFullThrowsException() {
+        when(factory.newClientEventBuffer()).thenReturn(new ClientEventBuffer(1, 0, BufferOverflowPolicy.REJECT));
+        final PrivateChannelImpl channel = (PrivateChannelImpl)newInstance(getChannelName());
+        channel.updateState(ChannelState.SUBSCRIBE_SENT);
+        channel.trigger("client-first", "1");
+
+        try {
+            channel.trigger("client-second", "2");
+            fail("No exception thrown for a full buffer");
+        }
+        catch (final IllegalStateException e) {
+            // exception correctly thrown
+        }
+
+        // an unsubscribed channel drops what it buffered
+        channel.updateState(ChannelState.UNSUBSCRIBED);
+        when(mockConnection.getState()).thenReturn(ConnectionState.CONNECTED);
+        channel.updateState(ChannelState.SUBSCRIBED);
+        verify(mockConnection, never()).sendMessage(anyString());
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testCannotBindIfListenerIsNotAPrivateChannelEventListener() {
         final ChannelEventListener listener = mock(ChannelEventListener.class);
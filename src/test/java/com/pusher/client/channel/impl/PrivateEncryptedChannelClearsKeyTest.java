@@ -12,6 +12,7 @@ import com.pusher.client.connection.impl.InternalConnection;
 import com.pusher.client.crypto.nacl.SecretBoxOpener;
 import com.pusher.client.crypto.nacl.SecretBoxOpenerFactory;
 import com.pusher.client.util.Factory;
+import com.pusher.client.util.GsonJsonCodec;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -41,6 +42,7 @@ public class PrivateEncryptedChannelClearsKeyTest {
 
     @Before
     public void setUp() {
+        when(mockFactory.getJsonCodec()).thenReturn(new GsonJsonCodec());
         when(mockAuthorizer.authorize(eq(CHANNEL_NAME), anyString())).thenReturn(AUTH_RESPONSE);
         when(mockSecretBoxOpenerFactory.create(any())).thenReturn(mockSecretBoxOpener);
 
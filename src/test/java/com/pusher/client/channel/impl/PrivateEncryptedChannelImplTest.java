@@ -3,7 +3,9 @@ package com.pusher.client.channel.impl;
 import com.pusher.client.AuthorizationFailureException;
 import com.pusher.client.Authorizer;
 import com.pusher.client.channel.ChannelEventListener;
+import com.pusher.client.channel.PusherEvent;
 import com.pusher.client.channel.PrivateEncryptedChannelEventListener;
+import com.pusher.client.channel.TypedSubscriptionEventListener;
 import com.pusher.client.connection.impl.InternalConnection;
 import com.pusher.client.crypto.nacl.SecretBoxOpener;
 import com.pusher.client.crypto.nacl.SecretBoxOpenerFactory;
@@ -12,14 +14,17 @@ import com.pusher.client.util.internal.Base64;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Matchers;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -61,6 +66,16 @@ public class PrivateEncryptedChannelImplTest extends ChannelImplTest {
                 factory, mockSecretBoxOpenerFactory);
     }
 
+    @Test
+    @Override
+    public void testSubscribeAndUnsubscribeMessagesAreEncodedOnce() {
+        // the subscribe message carries a fresh auth signature every time
+        channel.toSubscribeMessage();
+        channel.toSubscribeMessage();
+        verify(mockAuthorizer, times(2)).authorize(eq(getChannelName()), anyString());
+        assertSame(channel.toUnsubscribeMessage(), channel.toUnsubscribeMessage());
+    }
+
     protected String getChannelName() {
         return "private-encrypted-channel";
     }
@@ -180,13 +195,13 @@ public class PrivateEncryptedChannelImplTest extends ChannelImplTest {
         PrivateEncryptedChannelEventListener mockListener = mock(PrivateEncryptedChannelEventListener.class);
 
         channel.bind("my-event", mockListener);
-        channel.onMessage("my-event", "{\"event\":\"event1\",\"data\":\"{" +
+        channel.onMessage(PusherEvent.fromJson("{\"event\":\"my-event\",\"data\":\"{" +
                 "\\\"nonce\\\": \\\"4sVYwy4j/8dCcjyxtPCWyk19GaaViaW9\\\"," +
                 "\\\"ciphertext\\\": \\\"/GMESnFGlbNn01BuBjp31XYa3i9vZsGKR8fgR9EDhXKx3lzGiUD501A=\\\"" +
-                "}\"}");
+                "}\"}"));
 
         verify(mockListener, times(1)).onEvent(argCaptor.capture());
-        assertEquals("event1", argCaptor.getValue().getEventName());
+        assertEquals("my-event", argCaptor.getValue().getEventName());
         assertEquals("{\"message\":\"hello world\"}", argCaptor.getValue().getData());
     }
 
@@ -211,17 +226,17 @@ public class PrivateEncryptedChannelImplTest extends ChannelImplTest {
 
         channel.bind("my-event", mockListener1);
         channel.bind("my-event", mockListener2);
-        channel.onMessage("my-event", "{\"event\":\"event1\",\"data\":\"{" +
+        channel.onMessage(PusherEvent.fromJson("{\"event\":\"my-event\",\"data\":\"{" +
                 "\\\"nonce\\\": \\\"4sVYwy4j/8dCcjyxtPCWyk19GaaViaW9\\\"," +
                 "\\\"ciphertext\\\": \\\"/GMESnFGlbNn01BuBjp31XYa3i9vZsGKR8fgR9EDhXKx3lzGiUD501A=\\\"" +
-                "}\"}");
+                "}\"}"));
 
         verify(mockListener1).onEvent(argCaptor.capture());
-        assertEquals("event1", argCaptor.getValue().getEventName());
+        assertEquals("my-event", argCaptor.getValue().getEventName());
         assertEquals("{\"message\":\"hello world\"}", argCaptor.getValue().getData());
 
         verify(mockListener2).onEvent(argCaptor.capture());
-        assertEquals("event1", argCaptor.getValue().getEventName());
+        assertEquals("my-event", argCaptor.getValue().getEventName());
         assertEquals("{\"message\":\"hello world\"}", argCaptor.getValue().getData());
     }
 
@@ -245,10 +260,10 @@ public class PrivateEncryptedChannelImplTest extends ChannelImplTest {
 
         PrivateEncryptedChannelEventListener mockListener1 = mock(PrivateEncryptedChannelEventListener.class);
         channel.bind("my-event", mockListener1);
-        channel.onMessage("my-event", "{\"event\":\"event1\",\"data\":\"{" +
+        channel.onMessage(PusherEvent.fromJson("{\"event\":\"my-event\",\"data\":\"{" +
                 "\\\"nonce\\\": \\\"4sVYwy4j/8dCcjyxtPCWyk19GaaViaW9\\\"," +
                 "\\\"ciphertext\\\": \\\"/GMESnFGlbNn01BuBjp31XYa3i9vZsGKR8fgR9EDhXKx3lzGiUD501A=\\\"" +
-                "}\"}");
+                "}\"}"));
 
         verify(mockListener1).onDecryptionFailure(anyString(), anyString());
     }
@@ -273,13 +288,13 @@ public class PrivateEncryptedChannelImplTest extends ChannelImplTest {
 
         PrivateEncryptedChannelEventListener mockListener1 = mock(PrivateEncryptedChannelEventListener.class);
         channel.bind("my-event", mockListener1);
-        channel.onMessage("my-event", "{\"event\":\"event1\",\"data\":\"{" +
+        channel.onMessage(PusherEvent.fromJson("{\"event\":\"my-event\",\"data\":\"{" +
                 "\\\"nonce\\\": \\\"4sVYwy4j/8dCcjyxtPCWyk19GaaViaW9\\\"," +
                 "\\\"ciphertext\\\": \\\"/GMESnFGlbNn01BuBjp31XYa3i9vZsGKR8fgR9EDhXKx3lzGiUD501A=\\\"" +
-                "}\"}");
+                "}\"}"));
 
         verify(mockListener1).onEvent(argCaptor.capture());
-        assertEquals("event1", argCaptor.getValue().getEventName());
+        assertEquals("my-event", argCaptor.getValue().getEventName());
         assertEquals("{\"message\":\"hello world\"}", argCaptor.getValue().getData());
     }
 
@@ -306,21 +321,21 @@ public class PrivateEncryptedChannelImplTest extends ChannelImplTest {
 
         PrivateEncryptedChannelEventListener mockListener1 = mock(PrivateEncryptedChannelEventListener.class);
         channel.bind("my-event", mockListener1);
-        channel.onMessage("my-event", "{\"event\":\"event1\",\"data\":\"{" +
+        channel.onMessage(PusherEvent.fromJson("{\"event\":\"my-event\",\"data\":\"{" +
                 "\\\"nonce\\\": \\\"4sVYwy4j/8dCcjyxtPCWyk19GaaViaW9\\\"," +
                 "\\\"ciphertext\\\": \\\"/GMESnFGlbNn01BuBjp31XYa3i9vZsGKR8fgR9EDhXKx3lzGiUD501A=\\\"" +
-                "}\"}");
+                "}\"}"));
 
         verify(mockListener1).onDecryptionFailure("my-event", "Failed to decrypt message.");
 
         // send a second message
-        channel.onMessage("my-event", "{\"event\":\"event1\",\"data\":\"{" +
+        channel.onMessage(PusherEvent.fromJson("{\"event\":\"my-event\",\"data\":\"{" +
                 "\\\"nonce\\\": \\\"4sVYwy4j/8dCcjyxtPCWyk19GaaViaW9\\\"," +
                 "\\\"ciphertext\\\": \\\"/GMESnFGlbNn01BuBjp31XYa3i9vZsGKR8fgR9EDhXKx3lzGiUD501A=\\\"" +
-                "}\"}");
+                "}\"}"));
 
         verify(mockListener1).onEvent(argCaptor.capture());
-        assertEquals("event1", argCaptor.getValue().getEventName());
+        assertEquals("my-event", argCaptor.getValue().getEventName());
         assertEquals("{\"message\":\"hello world\"}", argCaptor.getValue().getData());
     }
 
@@ -347,18 +362,116 @@ public class PrivateEncryptedChannelImplTest extends ChannelImplTest {
 
         PrivateEncryptedChannelEventListener mockListener1 = mock(PrivateEncryptedChannelEventListener.class);
         channel.bind("my-event", mockListener1);
-        channel.onMessage("my-event", "{\"event\":\"event1\",\"data\":\"{" +
+        channel.onMessage(PusherEvent.fromJson("{\"event\":\"my-event\",\"data\":\"{" +
                 "\\\"nonce\\\": \\\"4sVYwy4j/8dCcjyxtPCWyk19GaaViaW9\\\"," +
                 "\\\"ciphertext\\\": \\\"/GMESnFGlbNn01BuBjp31XYa3i9vZsGKR8fgR9EDhXKx3lzGiUD501A=\\\"" +
-                "}\"}");
+                "}\"}"));
         // send a second message
-        channel.onMessage("my-event", "{\"event\":\"event1\",\"data\":\"{" +
+        channel.onMessage(PusherEvent.fromJson("{\"event\":\"my-event\",\"data\":\"{" +
                 "\\\"nonce\\\": \\\"4sVYwy4j/8dCcjyxtPCWyk19GaaViaW9\\\"," +
                 "\\\"ciphertext\\\": \\\"/GMESnFGlbNn01BuBjp31XYa3i9vZsGKR8fgR9EDhXKx3lzGiUD501A=\\\"" +
-                "}\"}");
+                "}\"}"));
 
         verify(mockListener1, times(2))
                 .onDecryptionFailure("my-event", "Failed to decrypt message.");
     }
 
+    @Override
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testTypedListenerReceivesDecodedData() {
+        PrivateEncryptedChannelImpl channel = newInstance();
+
+        when(mockSecretBoxOpenerFactory.create(any()))
+                .thenReturn(new SecretBoxOpener(Base64.decode(SHARED_SECRET)));
+
+        channel.toSubscribeMessage();
+
+        TypedSubscriptionEventListener<Message> typedListener = mock(TypedSubscriptionEventListener.class);
+        ArgumentCaptor<Message> messageCaptor = ArgumentCaptor.forClass(Message.class);
+
+        channel.bind("my-event", Message.class, typedListener);
+        channel.onMessage(PusherEvent.fromJson("{\"event\":\"my-event\",\"data\":\"{" +
+                "\\\"nonce\\\": \\\"4sVYwy4j/8dCcjyxtPCWyk19GaaViaW9\\\"," +
+                "\\\"ciphertext\\\": \\\"/GMESnFGlbNn01BuBjp31XYa3i9vZsGKR8fgR9EDhXKx3lzGiUD501A=\\\"" +
+                "}\"}"));
+
+        verify(typedListener).onEvent(any(PusherEvent.class), messageCaptor.capture());
+        assertEquals("hello world", messageCaptor.getValue().message);
+    }
+
+    @Override
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testTypedListenerIsNotifiedOfUndecodableData() {
+        PrivateEncryptedChannelImpl channel = newInstance();
+
+        when(mockAuthorizer.authorize(Matchers.anyString(), Matchers.anyString()))
+                .thenReturn(AUTH_RESPONSE_INCORRECT_SHARED_SECRET)
+                .thenReturn(AUTH_RESPONSE_INCORRECT_SHARED_SECRET);
+        when(mockSecretBoxOpenerFactory.create(any()))
+                .thenReturn(new SecretBoxOpener(Base64.decode(SHARED_SECRET_INCORRECT)))
+                .thenReturn(new SecretBoxOpener(Base64.decode(SHARED_SECRET_INCORRECT)));
+
+        channel.toSubscribeMessage();
+
+        TypedSubscriptionEventListener<Message> typedListener = mock(TypedSubscriptionEventListener.class);
+        channel.bind("my-event", Message.class, typedListener);
+        channel.onMessage(PusherEvent.fromJson("{\"event\":\"my-event\",\"data\":\"{" +
+                "\\\"nonce\\\": \\\"4sVYwy4j/8dCcjyxtPCWyk19GaaViaW9\\\"," +
+                "\\\"ciphertext\\\": \\\"/GMESnFGlbNn01BuBjp31XYa3i9vZsGKR8fgR9EDhXKx3lzGiUD501A=\\\"" +
+                "}\"}"));
+
+        verify(typedListener).onError("Failed to decrypt message.", null);
+    }
+
+    @Override
+    @Test
+    public void testEventIsDispatchedToAllListenersAsOneTask() {
+        PrivateEncryptedChannelImpl channel = newInstance();
+
+        when(mockSecretBoxOpenerFactory.create(any()))
+                .thenReturn(new SecretBoxOpener(Base64.decode(SHARED_SECRET)));
+
+        channel.toSubscribeMessage();
+
+        channel.bind("my-event", mock(PrivateEncryptedChannelEventListener.class));
+        channel.bind("my-event", mock(PrivateEncryptedChannelEventListener.class));
+        channel.bind("my-event", mock(PrivateEncryptedChannelEventListener.class));
+        channel.onMessage(PusherEvent.fromJson("{\"event\":\"my-event\",\"data\":\"{" +
+                "\\\"nonce\\\": \\\"4sVYwy4j/8dCcjyxtPCWyk19GaaViaW9\\\"," +
+                "\\\"ciphertext\\\": \\\"/GMESnFGlbNn01BuBjp31XYa3i9vZsGKR8fgR9EDhXKx3lzGiUD501A=\\\"" +
+                "}\"}"));
+
+        verify(factory, times(1)).queueOnChannelThread(eq(getChannelName()), any(Runnable.class));
+    }
+
+    @Override
+    @Test
+    public void testListenerWhichThrowsDoesNotStopOtherListeners() {
+        PrivateEncryptedChannelImpl channel = newInstance();
+
+        when(mockSecretBoxOpenerFactory.create(any()))
+                .thenReturn(new SecretBoxOpener(Base64.decode(SHARED_SECRET)));
+
+        channel.toSubscribeMessage();
+
+        PrivateEncryptedChannelEventListener mockListener1 = mock(PrivateEncryptedChannelEventListener.class);
+        PrivateEncryptedChannelEventListener mockListener2 = mock(PrivateEncryptedChannelEventListener.class);
+        doThrow(new RuntimeException("boom")).when(mockListener1).onEvent(any(PusherEvent.class));
+
+        channel.bind("my-event", mockListener1);
+        channel.bind("my-event", mockListener2);
+        channel.onMessage(PusherEvent.fromJson("{\"event\":\"my-event\",\"data\":\"{" +
+                "\\\"nonce\\\": \\\"4sVYwy4j/8dCcjyxtPCWyk19GaaViaW9\\\"," +
+                "\\\"ciphertext\\\": \\\"/GMESnFGlbNn01BuBjp31XYa3i9vZsGKR8fgR9EDhXKx3lzGiUD501A=\\\"" +
+                "}\"}"));
+
+        verify(mockListener1).onEvent(any(PusherEvent.class));
+        verify(mockListener2).onEvent(any(PusherEvent.class));
+    }
+
+    private static class Message {
+        String message;
+    }
 }
@@ -0,0 +1,55 @@
+package com.pusher.client.connection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class DecorrelatedJitterBackoffTest {
+
+    private final ReconnectionPolicy policy = new DecorrelatedJitterBackoff(100, 5000);
+
+    @Test
+    public void staysBetweenBaseAndThreeTimesThePreviousDelay() {
+        long previous = 0;
+        for (int attempt = 1; attempt <= 1000; attempt++) {
+            final long delay = policy.getReconnectionDelay(attempt, previous);
+            assertTrue(delay >= 100);
+            assertTrue(delay <= Math.max(100, previous) * 3);
+            assertTrue(delay <= 5000);
+            previous = delay;
+        }
+    }
+
+    @Test
+    public void firstRetryCanComeWithinASecond() {
+        for (int i = 0; i < 100; i++) {
+            assertTrue(policy.getReconnectionDelay(1, 0) <= 300);
+        }
+    }
+
+    @Test
+    public void spreadsOutClientsThatRetryTogether() {
+        final Set<Long> delays = new HashSet<Long>();
+        for (int i = 0; i < 100; i++) {
+            delays.add(policy.getReconnectionDelay(3, 1000));
+        }
+        assertTrue(delays.size() > 10);
+    }
+
+    @Test
+    public void quadraticBackoffIsCapped() {
+        final ReconnectionPolicy quadratic = new QuadraticBackoff(30000);
+        assertEquals(1000, quadratic.getReconnectionDelay(1, 0));
+        assertEquals(9000, quadratic.getReconnectionDelay(3, 4000));
+        assertEquals(30000, quadratic.getReconnectionDelay(6, 25000));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMaxDelayBelowBase() {
+        new DecorrelatedJitterBackoff(1000, 500);
+    }
+}
@@ -0,0 +1,171 @@
+package com.pusher.client.connection.impl;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+import com.pusher.client.PusherOptions;
+import com.pusher.client.channel.impl.ChannelManager;
+import com.pusher.client.connection.ConnectionEventListener;
+import com.pusher.client.connection.ConnectionState;
+import com.pusher.client.connection.ConnectionStateChange;
+import com.pusher.client.connection.websocket.WebSocketConnection;
+import com.pusher.client.util.Factory;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ConnectionPoolTest {
+
+    private static final String URL = "ws://ws.example.com/app/123456";
+
+    private @Mock Factory factory;
+    private @Mock ChannelManager channelManager;
+    private @Mock ConnectionEventListener listener;
+    private final PusherOptions options = new PusherOptions();
+    private final List<InternalConnection> created = new ArrayList<InternalConnection>();
+    private final Set<String> channelNames = new HashSet<String>();
+
+    @Before
+    public void setUp() {
+        when(factory.newWebSocketConnection(URL, options)).thenAnswer(new Answer<WebSocketConnection>() {
+            @Override
+            public WebSocketConnection answer(final InvocationOnMock invocation) {
+                final WebSocketConnection connection = mock(WebSocketConnection.class);
+                when(connection.getState()).thenReturn(ConnectionState.CONNECTED);
+                created.add(connection);
+                return connection;
+            }
+        });
+        doAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(final InvocationOnMock invocation) {
+                ((Runnable)invocation.getArguments()[0]).run();
+                return null;
+            }
+        }).when(factory).queueOnEventThread(any(Runnable.class));
+        when(factory.getChannelManager()).thenReturn(channelManager);
+        when(channelManager.getChannelNames()).thenReturn(channelNames);
+
+        for (int i = 0; i < 2000; i++) {
+            channelNames.add("channel-" + i);
+        }
+    }
+
+    @Test
+    public void spreadsChannelsOverAllConnections() {
+        final ConnectionPool pool = new ConnectionPool(URL, options, 4, factory);
+
+        final Map<InternalConnection, Integer> counts = new HashMap<InternalConnection, Integer>();
+        for (final String channelName : channelNames) {
+            final InternalConnection owner = pool.connectionFor(channelName);
+            assertSame(owner, pool.connectionFor(channelName));
+            counts.put(owner, counts.containsKey(owner) ? counts.get(owner) + 1 : 1);
+        }
+
+        assertEquals(4, counts.size());
+        for (final int count : counts.values()) {
+            assertTrue("unbalanced: " + counts.values(), count > 300 && count < 700);
+        }
+    }
+
+    @Test
+    public void growingOnlyMovesChannelsToTheNewConnection() {
+        final ConnectionPool pool = new ConnectionPool(URL, options, 4, factory);
+        final Map<String, InternalConnection> before = new HashMap<String, InternalConnection>();
+        for (final String channelName : channelNames) {
+            before.put(channelName, pool.connectionFor(channelName));
+        }
+
+        pool.connect();
+        pool.resize(5);
+
+        final InternalConnection added = created.get(4);
+        verify(added).connect();
+        int moved = 0;
+        for (final String channelName : channelNames) {
+            final InternalConnection owner = pool.connectionFor(channelName);
+            if (owner != before.get(channelName)) {
+                moved++;
+                assertSame(added, owner);
+                verify(before.get(channelName)).sendMessage(
+                        "{\"event\":\"pusher:unsubscribe\",\"data\":{\"channel\":\"" + channelName + "\"}}");
+                verify(channelManager).resubscribe(channelName);
+            }
+        }
+        assertTrue("moved " + moved, moved > 200 && moved < 600);
+    }
+
+    @Test
+    public void shrinkingDisconnectsTheRemovedConnection() {
+        final ConnectionPool pool = new ConnectionPool(URL, options, 3, factory);
+
+        pool.resize(2);
+
+        assertEquals(2, pool.getSize());
+        verify(created.get(2)).disconnect();
+        for (final String channelName : channelNames) {
+            assertNotSame(created.get(2), pool.connectionFor(channelName));
+        }
+    }
+
+    @Test
+    public void isOnlyConnectedWhenAllConnectionsAre() {
+        final ConnectionPool pool = new ConnectionPool(URL, options, 2, factory);
+        assertEquals(ConnectionState.CONNECTED, pool.getState());
+
+        when(created.get(1).getState()).thenReturn(ConnectionState.RECONNECTING);
+        assertEquals(ConnectionState.RECONNECTING, pool.getState());
+
+        when(created.get(0).getState()).thenReturn(ConnectionState.DISCONNECTED);
+        when(created.get(1).getState()).thenReturn(ConnectionState.DISCONNECTED);
+        assertEquals(ConnectionState.DISCONNECTED, pool.getState());
+    }
+
+    @Test
+    public void connectionResubscribesItsOwnChannelsAndReportsPoolState() {
+        final ConnectionPool pool = new ConnectionPool(URL, options, 2, factory);
+        pool.bind(ConnectionState.ALL, listener);
+        final ArgumentCaptor<ConnectionEventListener> shardListener = ArgumentCaptor.forClass(ConnectionEventListener.class);
+        verify(created.get(1)).bind(eq(ConnectionState.ALL), shardListener.capture());
+
+        shardListener.getValue().onConnectionStateChange(
+                new ConnectionStateChange(ConnectionState.CONNECTING, ConnectionState.CONNECTED));
+
+        verify(channelManager).resubscribeChannelsOn(created.get(1));
+        final ArgumentCaptor<ConnectionStateChange> change = ArgumentCaptor.forClass(ConnectionStateChange.class);
+        verify(listener).onConnectionStateChange(change.capture());
+        assertEquals(ConnectionState.DISCONNECTED, change.getValue().getPreviousState());
+        assertEquals(ConnectionState.CONNECTED, change.getValue().getCurrentState());
+    }
+
+    @Test
+    public void routeFollowsChannelAfterResize() {
+        final ConnectionPool pool = new ConnectionPool(URL, options, 1, factory);
+        final InternalConnection route = pool.routeFor("channel-1");
+
+        pool.resize(8);
+        route.sendMessage("message");
+
+        verify(pool.connectionFor("channel-1")).sendMessage("message");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEmptyPool() {
+        new ConnectionPool(URL, options, 0, factory);
+    }
+}
@@ -0,0 +1,46 @@
+package com.pusher.client.connection.websocket;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class FrameDeduplicatorTest {
+
+    private final FrameDeduplicator deduplicator = new FrameDeduplicator(2, 2);
+
+    @Test
+    public void deliversOnlyTheFirstArrival() {
+        assertTrue(deduplicator.firstArrival(0, "a"));
+        assertFalse(deduplicator.firstArrival(1, "a"));
+        assertTrue(deduplicator.firstArrival(1, "b"));
+        assertFalse(deduplicator.firstArrival(0, "b"));
+    }
+
+    @Test
+    public void deliversAFrameSentTwiceTwice() {
+        assertTrue(deduplicator.firstArrival(0, "a"));
+        assertTrue(deduplicator.firstArrival(0, "a"));
+        assertFalse(deduplicator.firstArrival(1, "a"));
+        assertFalse(deduplicator.firstArrival(1, "a"));
+        assertTrue(deduplicator.firstArrival(1, "a"));
+    }
+
+    @Test
+    public void deliversNewArrivalsOnASocketWhichMissedSome() {
+        assertTrue(deduplicator.firstArrival(0, "a"));
+        assertTrue(deduplicator.firstArrival(0, "a"));
+        deduplicator.rebase(1);
+        assertTrue(deduplicator.firstArrival(1, "a"));
+        assertFalse(deduplicator.firstArrival(0, "a"));
+    }
+
+    @Test
+    public void forgetsFramesOutsideTheWindow() {
+        assertTrue(deduplicator.firstArrival(0, "a"));
+        assertTrue(deduplicator.firstArrival(0, "b"));
+        assertTrue(deduplicator.firstArrival(0, "c"));
+        assertTrue(deduplicator.firstArrival(1, "a"));
+        assertFalse(deduplicator.firstArrival(1, "c"));
+    }
+}
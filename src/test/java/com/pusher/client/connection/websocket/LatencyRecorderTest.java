@@ -0,0 +1,54 @@
+package com.pusher.client.connection.websocket;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.pusher.client.connection.LatencyStats;
+
+public class LatencyRecorderTest {
+
+    private static final long MS = 1000000L;
+
+    private final LatencyRecorder recorder = new LatencyRecorder(4);
+
+    @Test
+    public void pairsEachPongWithTheOutstandingPing() {
+        recorder.pingSent(0);
+        recorder.pingSent(5 * MS); // still timing the first one
+        recorder.pongReceived(10 * MS);
+        recorder.pongReceived(20 * MS); // nothing outstanding
+
+        final LatencyStats stats = recorder.snapshot();
+        assertEquals(1, stats.getSampleCount());
+        assertEquals(10.0, stats.getLastMillis(), 0.001);
+        assertTrue(recorder.isIdle());
+    }
+
+    @Test
+    public void keepsOnlyTheMostRecentSamples() {
+        for (int i = 1; i <= 6; i++) {
+            recorder.pingSent(0);
+            recorder.pongReceived(i * MS);
+        }
+
+        final LatencyStats stats = recorder.snapshot();
+        assertEquals(4, stats.getSampleCount());
+        assertEquals(3.0, stats.getMinMillis(), 0.001);
+        assertEquals(6.0, stats.getMaxMillis(), 0.001);
+        assertEquals(6.0, stats.getLastMillis(), 0.001);
+        assertEquals(4.5, stats.getMeanMillis(), 0.001);
+        assertEquals(4.0, stats.getPercentileMillis(50), 0.001);
+        assertEquals(6.0, stats.getPercentileMillis(99), 0.001);
+    }
+
+    @Test
+    public void resetForgetsTheOutstandingPing() {
+        recorder.pingSent(0);
+        recorder.reset();
+        recorder.pongReceived(10 * MS);
+
+        assertEquals(0, recorder.snapshot().getSampleCount());
+        assertEquals(0.0, recorder.snapshot().getPercentileMillis(90), 0.001);
+    }
+}
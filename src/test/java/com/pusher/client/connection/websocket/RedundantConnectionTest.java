@@ -0,0 +1,210 @@
+package com.pusher.client.connection.websocket;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import java.net.Proxy;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+import com.pusher.client.Authorizer;
+import com.pusher.client.PusherOptions;
+import com.pusher.client.channel.PresenceChannelEventListener;
+import com.pusher.client.channel.PusherEvent;
+import com.pusher.client.channel.impl.ChannelManager;
+import com.pusher.client.channel.impl.InternalChannel;
+import com.pusher.client.channel.impl.PresenceChannelImpl;
+import com.pusher.client.connection.ConnectionState;
+import com.pusher.client.util.DoNothingExecutor;
+import com.pusher.client.util.Factory;
+import com.pusher.client.util.GsonJsonCodec;
+
+@RunWith(MockitoJUnitRunner.class)
+public class RedundantConnectionTest {
+
+    private static final List<String> URLS = Arrays.asList("ws://ws-a.example.com/", "ws://ws-b.example.com/");
+    private static final String EVENT = "{\"event\":\"my-event\",\"channel\":\"my-channel\",\"data\":\"{}\"}";
+
+    private @Mock Factory factory;
+    private @Mock ChannelManager channelManager;
+    private @Mock WebSocketClientWrapper firstSocket;
+    private @Mock WebSocketClientWrapper secondSocket;
+    private final PusherOptions options = new PusherOptions();
+    private final List<WebSocketConnection> members = new ArrayList<WebSocketConnection>();
+    private RedundantConnection connection;
+
+    @Before
+    public void setUp() throws Exception {
+        when(factory.getJsonCodec()).thenReturn(new GsonJsonCodec());
+        when(factory.getChannelManager()).thenReturn(channelManager);
+        when(factory.getTimers()).thenReturn(new DoNothingExecutor());
+        when(factory.newWebSocketClientWrapper(any(URI.class), any(Proxy.class), any(WebSocketListener.class)))
+                .thenReturn(firstSocket, secondSocket);
+        doAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(final InvocationOnMock invocation) {
+                ((Runnable)invocation.getArguments()[0]).run();
+                return null;
+            }
+        }).when(factory).queueOnEventThread(any(Runnable.class));
+        doAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(final InvocationOnMock invocation) {
+                ((Runnable)invocation.getArguments()[0]).run();
+                return null;
+            }
+        }).when(factory).queueBehindInbound(any(Runnable.class));
+        when(factory.queueInbound(any(Runnable.class))).thenAnswer(new Answer<Boolean>() {
+            @Override
+            public Boolean answer(final InvocationOnMock invocation) {
+                ((Runnable)invocation.getArguments()[0]).run();
+                return true;
+            }
+        });
+        when(factory.newWebSocketConnection(anyString(), eq(options))).thenAnswer(new Answer<WebSocketConnection>() {
+            @Override
+            public WebSocketConnection answer(final InvocationOnMock invocation) throws Exception {
+                final WebSocketConnection member = new WebSocketConnection((String)invocation.getArguments()[0],
+                        120000, 30000, 6, 30, Proxy.NO_PROXY, factory);
+                members.add(member);
+                return member;
+            }
+        });
+
+        connection = new RedundantConnection(URLS, options, factory);
+    }
+
+    @Test
+    public void deliversEachEventFromWhicheverConnectionGetsItFirst() {
+        connection.connect();
+        establish(0, "1.1");
+        establish(1, "2.2");
+
+        members.get(1).onMessage(EVENT);
+        members.get(0).onMessage(EVENT);
+        verify(channelManager, times(1)).onMessage(any(PusherEvent.class));
+
+        members.get(0).onMessage(EVENT);
+        verify(channelManager, times(2)).onMessage(any(PusherEvent.class));
+    }
+
+    @Test
+    public void deliversEventsFromAConnectionWhichCameBackAfterMissingSome() {
+        connection.connect();
+        establish(0, "1.1");
+        establish(1, "2.2");
+
+        members.get(1).onClose(1006, "dropped", true);
+        members.get(0).onMessage(EVENT);
+        members.get(0).onMessage(EVENT);
+        verify(channelManager, times(2)).onMessage(any(PusherEvent.class));
+
+        establish(1, "2.3");
+        members.get(0).onClose(1006, "dropped", true);
+        members.get(1).onMessage(EVENT);
+        verify(channelManager, times(3)).onMessage(any(PusherEvent.class));
+    }
+
+    @Test
+    public void rebuildsPresenceAfterEveryConnectionHasDropped() {
+        final ChannelManager manager = new ChannelManager(factory);
+        when(factory.getChannelManager()).thenReturn(manager);
+        doAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(final InvocationOnMock invocation) {
+                ((Runnable)invocation.getArguments()[1]).run();
+                return null;
+            }
+        }).when(factory).queueOnChannelThread(anyString(), any(Runnable.class));
+        manager.setConnection(connection);
+        final Authorizer authorizer = mock(Authorizer.class);
+        when(authorizer.authorize(anyString(), anyString()))
+                .thenReturn("{\"auth\":\"key:sig\",\"channel_data\":\"{\\\"user_id\\\":\\\"1\\\"}\"}");
+        final PresenceChannelImpl channel = new PresenceChannelImpl(connection, "presence-room", authorizer, factory);
+        final PresenceChannelEventListener listener = mock(PresenceChannelEventListener.class);
+        manager.subscribeTo(channel, listener);
+
+        connection.connect();
+        establish(0, "1.1");
+        establish(1, "2.2");
+        members.get(0).onMessage(presenceSucceeded("\\\"1\\\",\\\"2\\\""));
+        members.get(1).onMessage(presenceSucceeded("\\\"1\\\",\\\"2\\\""));
+        assertEquals(2, channel.getUsers().size());
+        verify(listener, times(1)).onSubscriptionSucceeded("presence-room");
+
+        // user 2 leaves while every connection is down
+        members.get(0).onClose(1006, "dropped", true);
+        members.get(1).onClose(1006, "dropped", true);
+        establish(0, "1.3");
+        establish(1, "2.4");
+        members.get(0).onMessage(presenceSucceeded("\\\"1\\\""));
+        members.get(1).onMessage(presenceSucceeded("\\\"1\\\""));
+
+        assertEquals(1, channel.getUsers().size());
+        assertEquals("1", channel.getUsers().iterator().next().getId());
+        verify(listener, times(2)).onSubscriptionSucceeded("presence-room");
+    }
+
+    @Test
+    public void isConnectedWhileAnyConnectionIs() {
+        assertEquals(ConnectionState.DISCONNECTED, connection.getState());
+
+        connection.connect();
+        assertEquals(ConnectionState.CONNECTING, connection.getState());
+
+        establish(1, "2.2");
+        assertEquals(ConnectionState.CONNECTED, connection.getState());
+        verify(channelManager).resubscribeChannelsOn(members.get(1));
+    }
+
+    @Test
+    public void sendsClientEventsOverOneConnection() {
+        connection.connect();
+        establish(1, "2.2");
+
+        connection.sendMessage("message");
+
+        verify(secondSocket).send("message");
+        verify(firstSocket, never()).send(anyString());
+        assertEquals("2.2", connection.getSocketId());
+    }
+
+    @Test
+    public void authorizesPrivateChannelsForEachConnection() {
+        connection.connect();
+        establish(0, "1.1");
+        establish(1, "2.2");
+        final InternalChannel channel = mock(InternalChannel.class);
+        when(channel.toSubscribeMessage(anyString())).thenAnswer(new Answer<String>() {
+            @Override
+            public String answer(final InvocationOnMock invocation) {
+                return (String)invocation.getArguments()[0];
+            }
+        });
+
+        assertEquals("1.1", connection.toSubscribeMessage(members.get(0), channel));
+        assertEquals("2.2", connection.toSubscribeMessage(members.get(1), channel));
+        assertEquals(members, connection.connectionsFor("private-channel"));
+    }
+
+    private static String presenceSucceeded(final String ids) {
+        return "{\"event\":\"pusher_internal:subscription_succeeded\",\"channel\":\"presence-room\","
+                + "\"data\":\"{\\\"presence\\\":{\\\"ids\\\":[" + ids + "],\\\"hash\\\":{}}}\"}";
+    }
+
+    private void establish(final int member, final String socketId) {
+        members.get(member).onMessage("{\"event\":\"pusher:connection_established\",\"data\":\"{\\\"socket_id\\\":\\\""
+                + socketId + "\\\"}\"}");
+    }
+}
@@ -8,6 +8,10 @@ import java.net.InetSocketAddress;
 import java.net.Proxy;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -17,17 +21,23 @@ import javax.net.ssl.SSLException;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.mockito.stubbing.Answer;
 
+import com.pusher.client.channel.PusherEvent;
 import com.pusher.client.channel.impl.ChannelManager;
 import com.pusher.client.connection.ConnectionEventListener;
 import com.pusher.client.connection.ConnectionState;
 import com.pusher.client.connection.ConnectionStateChange;
+import com.pusher.client.connection.QuadraticBackoff;
+import com.pusher.client.connection.ReconnectionPolicy;
+import com.pusher.client.connection.impl.InternalConnection;
 import com.pusher.client.util.DoNothingExecutor;
 import com.pusher.client.util.Factory;
+import com.pusher.client.util.GsonJsonCodec;
 
 @RunWith(MockitoJUnitRunner.class)
 public class WebSocketConnectionTest {
@@ -58,6 +68,7 @@ public class WebSocketConnectionTest {
 
     @Before
     public void setUp() throws URISyntaxException, SSLException {
+        when(factory.getJsonCodec()).thenReturn(new GsonJsonCodec());
         when(factory.getChannelManager()).thenReturn(mockChannelManager);
         when(factory.newWebSocketClientWrapper(any(URI.class), any(Proxy.class), any(WebSocketConnection.class))).thenReturn(
                 mockUnderlyingConnection);
@@ -69,6 +80,22 @@ public class WebSocketConnectionTest {
                 return null;
             }
         }).when(factory).queueOnEventThread(any(Runnable.class));
+        doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                final Runnable r = (Runnable) invocation.getArguments()[0];
+                r.run();
+                return null;
+            }
+        }).when(factory).queueBehindInbound(any(Runnable.class));
+        when(factory.queueInbound(any(Runnable.class))).thenAnswer(new Answer<Boolean>() {
+            @Override
+            public Boolean answer(InvocationOnMock invocation) throws Throwable {
+                final Runnable r = (Runnable) invocation.getArguments()[0];
+                r.run();
+                return true;
+            }
+        });
         when(factory.getTimers()).thenReturn(new DoNothingExecutor());
 
         connection = new WebSocketConnection(URL, ACTIVITY_TIMEOUT, PONG_TIMEOUT, MAX_RECONNECTIONS, MAX_GAP, PROXY, factory);
@@ -204,7 +231,10 @@ public class WebSocketConnectionTest {
 
         connection.onMessage(INCOMING_MESSAGE);
 
-        verify(mockChannelManager).onMessage(EVENT_NAME, INCOMING_MESSAGE);
+        final ArgumentCaptor<PusherEvent> argument = ArgumentCaptor.forClass(PusherEvent.class);
+        verify(mockChannelManager).onMessage(argument.capture());
+        assertEquals(EVENT_NAME, argument.getValue().getEventName());
+        assertEquals("my-channel", argument.getValue().getChannelName());
     }
 
     @Test
@@ -307,6 +337,374 @@ public class WebSocketConnectionTest {
         verify(mockUnderlyingConnection, timeout((int) (ACTIVITY_TIMEOUT + PONG_TIMEOUT))).close();
     }
 
+    @Test
+    public void testInactivitySendsPing() throws InterruptedException {
+        when(factory.getTimers()).thenReturn(new ScheduledThreadPoolExecutor(1));
+
+        connection.connect();
+        connection.onMessage(CONN_ESTABLISHED_EVENT);
+
+        verify(mockUnderlyingConnection, timeout((int) (ACTIVITY_TIMEOUT * 2))).send(contains("pusher:ping"));
+        verify(mockUnderlyingConnection, never()).close();
+    }
+
+    @Test
+    public void testActivityDoesNotRescheduleTheTimer() {
+        when(factory.getTimers()).thenReturn(scheduledExecutorService);
+
+        connection.connect();
+        connection.onMessage(CONN_ESTABLISHED_EVENT);
+        for (int i = 0; i < 100; i++) {
+            connection.onMessage("{\"event\":\"my-event\",\"channel\":\"my-channel\",\"data\":\"{}\"}");
+        }
+
+        verify(scheduledExecutorService, times(1)).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+    }
+
+    @Test
+    public void testAdoptsLowerActivityTimeoutAdvertisedByServer() throws URISyntaxException {
+        when(factory.getTimers()).thenReturn(scheduledExecutorService);
+        connection = new WebSocketConnection(URL, 120000, PONG_TIMEOUT, MAX_RECONNECTIONS, MAX_GAP, PROXY, factory);
+
+        connection.connect();
+        connection.onMessage("{\"event\":\"pusher:connection_established\",\"data\":\"{\\\"socket_id\\\":\\\"21112.816204\\\",\\\"activity_timeout\\\":10}\"}");
+
+        final ArgumentCaptor<Long> delay = ArgumentCaptor.forClass(Long.class);
+        verify(scheduledExecutorService, times(2)).schedule(any(Runnable.class), delay.capture(), eq(TimeUnit.NANOSECONDS));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(120000), (long)delay.getAllValues().get(0));
+        assertTrue(delay.getAllValues().get(1) <= TimeUnit.SECONDS.toNanos(10));
+        assertTrue(delay.getAllValues().get(1) > TimeUnit.SECONDS.toNanos(9));
+    }
+
+    @Test
+    public void testKeepsConfiguredActivityTimeoutWhenServerAdvertisesLonger() {
+        when(factory.getTimers()).thenReturn(scheduledExecutorService);
+
+        connection.connect();
+        connection.onMessage("{\"event\":\"pusher:connection_established\",\"data\":\"{\\\"socket_id\\\":\\\"21112.816204\\\",\\\"activity_timeout\\\":120}\"}");
+
+        verify(scheduledExecutorService, times(1)).schedule(any(Runnable.class), eq(TimeUnit.MILLISECONDS.toNanos(ACTIVITY_TIMEOUT)), eq(TimeUnit.NANOSECONDS));
+    }
+
+    @Test
+    public void testProbesMeasureRoundTripTime() throws URISyntaxException {
+        final ScheduledThreadPoolExecutor timers = new ScheduledThreadPoolExecutor(1);
+        when(factory.getTimers()).thenReturn(timers);
+        connection = new WebSocketConnection(URL, 120000, PONG_TIMEOUT, 50, MAX_RECONNECTIONS, MAX_GAP, PROXY, factory);
+
+        try {
+            connection.connect();
+            connection.onMessage(CONN_ESTABLISHED_EVENT);
+            verify(mockUnderlyingConnection, timeout(1000)).send(contains("pusher:ping"));
+            connection.onMessage("{\"event\":\"pusher:pong\"}");
+
+            assertEquals(1, connection.getLatencyStats().getSampleCount());
+        }
+        finally {
+            timers.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testPongWithoutPingIsNotMeasured() {
+        connection.connect();
+        connection.onMessage(CONN_ESTABLISHED_EVENT);
+        connection.onMessage("{\"event\":\"pusher:pong\"}");
+
+        assertEquals(0, connection.getLatencyStats().getSampleCount());
+    }
+
+    @Test
+    public void testReconnectionDelayComesFromPolicy() throws URISyntaxException {
+        final ReconnectionPolicy policy = mock(ReconnectionPolicy.class);
+        when(policy.getReconnectionDelay(1, 0)).thenReturn(150L);
+        when(policy.getReconnectionDelay(2, 150)).thenReturn(400L);
+        when(factory.getTimers()).thenReturn(scheduledExecutorService);
+        doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                final Runnable r = (Runnable) invocation.getArguments()[0];
+                r.run();
+                return null;
+            }
+        }).when(scheduledExecutorService).schedule(any(Runnable.class), anyLong(), eq(TimeUnit.MILLISECONDS));
+        connection = new WebSocketConnection(URL, ACTIVITY_TIMEOUT, PONG_TIMEOUT, 0, MAX_RECONNECTIONS, policy, PROXY, factory);
+
+        connection.connect();
+        connection.onClose(500, "reason", true);
+        connection.onClose(500, "reason", true);
+
+        verify(scheduledExecutorService).schedule(any(Runnable.class), eq(150L), eq(TimeUnit.MILLISECONDS));
+        verify(scheduledExecutorService).schedule(any(Runnable.class), eq(400L), eq(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testHandsOverToSubscribedSocketWhenServerAsksToReconnect() throws Exception {
+        final WebSocketClientWrapper newSocket = mock(WebSocketClientWrapper.class);
+        when(factory.newWebSocketClientWrapper(any(URI.class), any(Proxy.class), any(WebSocketListener.class)))
+                .thenReturn(mockUnderlyingConnection, newSocket);
+        when(mockChannelManager.getChannelNames(any(InternalConnection.class))).thenReturn(Collections.singleton("my-channel"));
+        when(mockChannelManager.toSubscribeMessage("my-channel", "333.444")).thenReturn("subscribe-message");
+        connection = new WebSocketConnection(URL, ACTIVITY_TIMEOUT, PONG_TIMEOUT, 0, MAX_RECONNECTIONS,
+                new QuadraticBackoff(30000), true, PROXY, factory);
+        connect();
+
+        connection.onMessage("{\"event\":\"pusher:error\",\"data\":{\"code\":4200,\"message\":\"Reconnect\"}}");
+        final ArgumentCaptor<WebSocketListener> listener = ArgumentCaptor.forClass(WebSocketListener.class);
+        verify(factory, times(2)).newWebSocketClientWrapper(any(URI.class), any(Proxy.class), listener.capture());
+        final WebSocketListener newListener = listener.getAllValues().get(1);
+        verify(newSocket).connect();
+
+        newListener.onMessage("{\"event\":\"pusher:connection_established\",\"data\":\"{\\\"socket_id\\\":\\\"333.444\\\"}\"}");
+        verify(newSocket).send("subscribe-message");
+
+        // the same event arrives on both sockets while they overlap
+        connection.onMessage(INCOMING_MESSAGE);
+        newListener.onMessage(INCOMING_MESSAGE);
+        verify(mockChannelManager, times(1)).onMessage(any(PusherEvent.class));
+        verify(mockUnderlyingConnection, never()).close();
+
+        newListener.onMessage("{\"event\":\"pusher_internal:subscription_succeeded\",\"channel\":\"my-channel\",\"data\":\"{}\"}");
+        verify(mockUnderlyingConnection).close();
+        assertEquals("333.444", connection.getSocketId());
+        assertEquals(ConnectionState.CONNECTED, connection.getState());
+
+        connection.sendMessage("after-handover");
+        verify(newSocket).send("after-handover");
+        verify(mockUnderlyingConnection, never()).send("after-handover");
+    }
+
+    @Test
+    public void testDeduplicatesOldSocketFramesStillQueuedAtHandover() throws Exception {
+        final WebSocketClientWrapper newSocket = mock(WebSocketClientWrapper.class);
+        when(factory.newWebSocketClientWrapper(any(URI.class), any(Proxy.class), any(WebSocketListener.class)))
+                .thenReturn(mockUnderlyingConnection, newSocket);
+        when(mockChannelManager.getChannelNames(any(InternalConnection.class))).thenReturn(Collections.singleton("my-channel"));
+        when(mockChannelManager.toSubscribeMessage("my-channel", "333.444")).thenReturn("subscribe-message");
+        connection = new WebSocketConnection(URL, ACTIVITY_TIMEOUT, PONG_TIMEOUT, 0, MAX_RECONNECTIONS,
+                new QuadraticBackoff(30000), true, PROXY, factory);
+        connect();
+
+        connection.onMessage("{\"event\":\"pusher:error\",\"data\":{\"code\":4200,\"message\":\"Reconnect\"}}");
+        final ArgumentCaptor<WebSocketListener> listener = ArgumentCaptor.forClass(WebSocketListener.class);
+        verify(factory, times(2)).newWebSocketClientWrapper(any(URI.class), any(Proxy.class), listener.capture());
+        final WebSocketListener newListener = listener.getAllValues().get(1);
+        newListener.onMessage("{\"event\":\"pusher:connection_established\",\"data\":\"{\\\"socket_id\\\":\\\"333.444\\\"}\"}");
+
+        // the inbound lane falls behind, in order with what is queued behind it
+        final List<Runnable> inbound = new ArrayList<Runnable>();
+        final Answer<Boolean> queue = new Answer<Boolean>() {
+            @Override
+            public Boolean answer(final InvocationOnMock invocation) {
+                inbound.add((Runnable)invocation.getArguments()[0]);
+                return true;
+            }
+        };
+        doAnswer(queue).when(factory).queueInbound(any(Runnable.class));
+        doAnswer(queue).when(factory).queueBehindInbound(any(Runnable.class));
+
+        newListener.onMessage(INCOMING_MESSAGE);
+        connection.onMessage(INCOMING_MESSAGE);
+        newListener.onMessage("{\"event\":\"pusher_internal:subscription_succeeded\",\"channel\":\"my-channel\",\"data\":\"{}\"}");
+        verify(mockUnderlyingConnection).close();
+
+        for (final Runnable task : inbound) {
+            task.run();
+        }
+        final ArgumentCaptor<PusherEvent> delivered = ArgumentCaptor.forClass(PusherEvent.class);
+        verify(mockChannelManager, times(2)).onMessage(delivered.capture());
+        assertEquals(EVENT_NAME, delivered.getAllValues().get(0).getEventName());
+        assertEquals("pusher_internal:subscription_succeeded", delivered.getAllValues().get(1).getEventName());
+    }
+
+    @Test
+    public void testReconnectsAsUsualWhenHandoverFails() throws Exception {
+        final WebSocketClientWrapper newSocket = mock(WebSocketClientWrapper.class);
+        when(factory.newWebSocketClientWrapper(any(URI.class), any(Proxy.class), any(WebSocketListener.class)))
+                .thenReturn(mockUnderlyingConnection, newSocket);
+        connection = new WebSocketConnection(URL, ACTIVITY_TIMEOUT, PONG_TIMEOUT, 0, MAX_RECONNECTIONS,
+                new QuadraticBackoff(30000), true, PROXY, factory);
+        connect();
+
+        connection.onMessage("{\"event\":\"pusher:error\",\"data\":{\"code\":4201,\"message\":\"Reconnect\"}}");
+        final ArgumentCaptor<WebSocketListener> listener = ArgumentCaptor.forClass(WebSocketListener.class);
+        verify(factory, times(2)).newWebSocketClientWrapper(any(URI.class), any(Proxy.class), listener.capture());
+
+        listener.getAllValues().get(1).onClose(1006, "unreachable", false);
+
+        verify(newSocket).close();
+        verify(mockUnderlyingConnection).close();
+        assertEquals(ConnectionState.RECONNECTING, connection.getState());
+    }
+
+    @Test
+    public void testReconnectsWithoutDelayWhenServerAsksTo() {
+        when(factory.getTimers()).thenReturn(scheduledExecutorService);
+        connect();
+
+        connection.onClose(4200, "reason", true);
+
+        verify(scheduledExecutorService).schedule(any(Runnable.class), eq(0L), eq(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testKeepsTheFirstEndpointToBeEstablished() throws Exception {
+        final WebSocketClientWrapper otherSocket = mock(WebSocketClientWrapper.class);
+        when(factory.newWebSocketClientWrapper(any(URI.class), any(Proxy.class), any(WebSocketListener.class)))
+                .thenReturn(mockUnderlyingConnection, otherSocket);
+        when(factory.getTimers()).thenReturn(scheduledExecutorService);
+        doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                final Runnable r = (Runnable) invocation.getArguments()[0];
+                r.run();
+                return null;
+            }
+        }).when(scheduledExecutorService).schedule(any(Runnable.class), eq(100L), eq(TimeUnit.MILLISECONDS));
+        connection = new WebSocketConnection(Arrays.asList(URL, "ws://ws-other.example.com/"), 100, ACTIVITY_TIMEOUT,
+                PONG_TIMEOUT, 0, MAX_RECONNECTIONS, new QuadraticBackoff(30000), false, PROXY, factory);
+        connection.bind(ConnectionState.ALL, mockEventListener);
+
+        connection.connect();
+        final ArgumentCaptor<WebSocketListener> listener = ArgumentCaptor.forClass(WebSocketListener.class);
+        final ArgumentCaptor<URI> uri = ArgumentCaptor.forClass(URI.class);
+        verify(factory, times(2)).newWebSocketClientWrapper(uri.capture(), any(Proxy.class), listener.capture());
+        assertEquals(new URI("ws://ws-other.example.com/"), uri.getAllValues().get(1));
+        verify(otherSocket).connect();
+
+        listener.getAllValues().get(1).onMessage(CONN_ESTABLISHED_EVENT);
+        listener.getAllValues().get(0).onMessage(CONN_ESTABLISHED_EVENT);
+
+        verify(mockUnderlyingConnection).close();
+        verify(otherSocket, never()).close();
+        assertEquals(ConnectionState.CONNECTED, connection.getState());
+        verify(mockEventListener, times(1)).onConnectionStateChange(
+                new ConnectionStateChange(ConnectionState.CONNECTING, ConnectionState.CONNECTED));
+
+        connection.sendMessage("after-race");
+        verify(otherSocket).send("after-race");
+        verify(mockUnderlyingConnection, never()).send("after-race");
+
+        listener.getAllValues().get(1).onMessage(INCOMING_MESSAGE);
+        verify(mockChannelManager).onMessage(any(PusherEvent.class));
+    }
+
+    @Test
+    public void testDialsTheNextEndpointWhenOneFailsAndReconnectsWhenAllHave() throws Exception {
+        final WebSocketClientWrapper otherSocket = mock(WebSocketClientWrapper.class);
+        when(factory.newWebSocketClientWrapper(any(URI.class), any(Proxy.class), any(WebSocketListener.class)))
+                .thenReturn(mockUnderlyingConnection, otherSocket);
+        connection = new WebSocketConnection(Arrays.asList(URL, "ws://ws-other.example.com/"), 100, ACTIVITY_TIMEOUT,
+                PONG_TIMEOUT, 0, MAX_RECONNECTIONS, new QuadraticBackoff(30000), false, PROXY, factory);
+
+        connection.connect();
+        final ArgumentCaptor<WebSocketListener> listener = ArgumentCaptor.forClass(WebSocketListener.class);
+        verify(factory).newWebSocketClientWrapper(any(URI.class), any(Proxy.class), listener.capture());
+
+        // the stagger hasn't elapsed, but the first endpoint has failed
+        listener.getValue().onClose(1006, "unreachable", false);
+        verify(factory, times(2)).newWebSocketClientWrapper(any(URI.class), any(Proxy.class), listener.capture());
+        verify(otherSocket).connect();
+        assertEquals(ConnectionState.CONNECTING, connection.getState());
+
+        listener.getAllValues().get(2).onClose(1006, "unreachable", false);
+        assertEquals(ConnectionState.RECONNECTING, connection.getState());
+    }
+
+    @Test
+    public void testReportsAndRetriesWhenNoEndpointCanBeDialledOverSSL() throws Exception {
+        final SSLException sslException = new SSLException("no trust store");
+        when(factory.newWebSocketClientWrapper(any(URI.class), any(Proxy.class), any(WebSocketListener.class)))
+                .thenThrow(sslException);
+        when(factory.getTimers()).thenReturn(scheduledExecutorService);
+        connection = new WebSocketConnection(Arrays.asList(URL, "ws://ws-other.example.com/"), 100, ACTIVITY_TIMEOUT,
+                PONG_TIMEOUT, 0, MAX_RECONNECTIONS, new QuadraticBackoff(30000), false, PROXY, factory);
+        connection.bind(ConnectionState.ALL, mockEventListener);
+
+        connection.connect();
+        verify(factory, times(2)).newWebSocketClientWrapper(any(URI.class), any(Proxy.class), any(WebSocketListener.class));
+        verify(mockEventListener).onError("Error connecting over SSL", null, sslException);
+        assertEquals(ConnectionState.RECONNECTING, connection.getState());
+
+        final ArgumentCaptor<Runnable> reconnect = ArgumentCaptor.forClass(Runnable.class);
+        verify(scheduledExecutorService).schedule(reconnect.capture(), anyLong(), eq(TimeUnit.MILLISECONDS));
+        reconnect.getValue().run();
+        verify(factory, times(4)).newWebSocketClientWrapper(any(URI.class), any(Proxy.class), any(WebSocketListener.class));
+    }
+
+    @Test
+    public void testSendMessageDoesNotWaitForTheEventThread() {
+        connect();
+        // nothing queued on the event thread runs from now on
+        doNothing().when(factory).queueOnEventThread(any(Runnable.class));
+
+        connection.sendMessage("message");
+
+        verify(mockUnderlyingConnection).send("message");
+    }
+
+    @Test
+    public void testConnectionEventsAreNotQueuedBehindChannelEvents() {
+        connect();
+        connection.onMessage(INCOMING_MESSAGE);
+
+        verify(factory, times(1)).queueInbound(any(Runnable.class));
+    }
+
+    @Test
+    public void testChannelInternalEventsAreNotDroppedWithChannelEvents() {
+        connect();
+        // the inbound queue is full and drops whatever is offered to it
+        doReturn(true).when(factory).queueInbound(any(Runnable.class));
+
+        connection.onMessage(INCOMING_MESSAGE);
+        connection.onMessage("{\"event\":\"pusher_internal:subscription_succeeded\",\"channel\":\"my-channel\",\"data\":\"{}\"}");
+
+        final ArgumentCaptor<PusherEvent> delivered = ArgumentCaptor.forClass(PusherEvent.class);
+        verify(mockChannelManager).onMessage(delivered.capture());
+        assertEquals("pusher_internal:subscription_succeeded", delivered.getValue().getEventName());
+        verify(factory, times(1)).queueInbound(any(Runnable.class));
+    }
+
+    @Test
+    public void testChannelInternalEventsKeepTheirPlaceAmongChannelEvents() {
+        connect();
+        final List<Runnable> inbound = new ArrayList<Runnable>();
+        final Answer<Boolean> queue = new Answer<Boolean>() {
+            @Override
+            public Boolean answer(final InvocationOnMock invocation) {
+                inbound.add((Runnable)invocation.getArguments()[0]);
+                return true;
+            }
+        };
+        doAnswer(queue).when(factory).queueInbound(any(Runnable.class));
+        doAnswer(queue).when(factory).queueBehindInbound(any(Runnable.class));
+
+        connection.onMessage(INCOMING_MESSAGE);
+        connection.onMessage("{\"event\":\"pusher_internal:member_removed\",\"channel\":\"my-channel\",\"data\":\"{}\"}");
+        verify(mockChannelManager, never()).onMessage(any(PusherEvent.class));
+
+        for (final Runnable task : inbound) {
+            task.run();
+        }
+        final ArgumentCaptor<PusherEvent> delivered = ArgumentCaptor.forClass(PusherEvent.class);
+        verify(mockChannelManager, times(2)).onMessage(delivered.capture());
+        assertEquals(EVENT_NAME, delivered.getAllValues().get(0).getEventName());
+        assertEquals("pusher_internal:member_removed", delivered.getAllValues().get(1).getEventName());
+    }
+
+    @Test
+    public void testDisconnectsWhenTheInboundQueueRejectsAnEvent() {
+        connect();
+        doReturn(false).when(factory).queueInbound(any(Runnable.class));
+
+        connection.onMessage(INCOMING_MESSAGE);
+
+        verify(mockUnderlyingConnection).close();
+        verify(mockChannelManager, never()).onMessage(any(PusherEvent.class));
+        assertEquals(ConnectionState.RECONNECTING, connection.getState());
+    }
+
     @Test
     public void stateIsReconnectingAfterOnCloseWithoutTheUserDisconnecting() throws InterruptedException, SSLException {
         connection.connect();
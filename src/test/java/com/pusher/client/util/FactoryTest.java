@@ -0,0 +1,291 @@
+package com.pusher.client.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.pusher.client.PusherOptions;
+import org.junit.After;
+import org.junit.Test;
+
+public class FactoryTest {
+
+    private final Factory first = new Factory(new PusherOptions());
+    private final Factory second = new Factory(new PusherOptions());
+    private final Factory striped = new Factory(new PusherOptions().setDispatchStripes(4));
+
+    @After
+    public void tearDown() {
+        first.shutdownThreads();
+        second.shutdownThreads();
+        striped.shutdownThreads();
+    }
+
+    @Test
+    public void eventThreadsOfSeparateClientsRunConcurrently() throws InterruptedException {
+        final CountDownLatch firstStarted = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch secondRan = new CountDownLatch(1);
+
+        first.queueOnEventThread(new Runnable() {
+            @Override
+            public void run() {
+                firstStarted.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                }
+                catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        assertTrue(firstStarted.await(5, TimeUnit.SECONDS));
+
+        second.queueOnEventThread(new Runnable() {
+            @Override
+            public void run() {
+                secondRan.countDown();
+            }
+        });
+
+        try {
+            assertTrue(secondRan.await(5, TimeUnit.SECONDS));
+        }
+        finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void eventThroughputScalesWithTheNumberOfClients() throws InterruptedException {
+        final int clients = Math.min(4, Runtime.getRuntime().availableProcessors());
+        assumeTrue(clients > 1);
+
+        timeEventTasks(1); // warm up
+        final long oneClient = timeEventTasks(1);
+        final long severalClients = timeEventTasks(clients);
+
+        // each client does the same work, so clients sharing one lock would
+        // take about `clients` times as long as one client alone
+        assertTrue("one client took " + oneClient + "ns, " + clients + " clients took " + severalClients + "ns",
+                severalClients < oneClient * clients * 3 / 4);
+    }
+
+    @Test
+    public void slowChannelListenerDoesNotStallTheEventThread() throws InterruptedException {
+        final CountDownLatch listenerStarted = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch eventThreadRan = new CountDownLatch(1);
+
+        striped.queueOnChannelThread("busy-channel", new Runnable() {
+            @Override
+            public void run() {
+                listenerStarted.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                }
+                catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        assertTrue(listenerStarted.await(5, TimeUnit.SECONDS));
+
+        striped.queueOnEventThread(new Runnable() {
+            @Override
+            public void run() {
+                eventThreadRan.countDown();
+            }
+        });
+
+        try {
+            assertTrue(eventThreadRan.await(5, TimeUnit.SECONDS));
+        }
+        finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void keepsOrderWithinAChannel() throws InterruptedException {
+        final List<Integer> delivered = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch done = new CountDownLatch(1);
+        final List<Integer> expected = new ArrayList<Integer>();
+
+        for (int i = 0; i < 1000; i++) {
+            final int n = i;
+            expected.add(n);
+            striped.queueOnChannelThread("my-channel", new Runnable() {
+                @Override
+                public void run() {
+                    delivered.add(n);
+                }
+            });
+        }
+        striped.queueOnChannelThread("my-channel", new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(expected, delivered);
+    }
+
+    @Test
+    public void runsTasksInOrderOnSuppliedExecutor() throws InterruptedException {
+        final ExecutorService pool = Executors.newFixedThreadPool(4);
+        final Factory factory = new Factory(new PusherOptions().setDispatchExecutor(pool));
+        try {
+            final List<Integer> delivered = Collections.synchronizedList(new ArrayList<Integer>());
+            final List<Integer> expected = new ArrayList<Integer>();
+            final CountDownLatch done = new CountDownLatch(1);
+
+            for (int i = 0; i < 1000; i++) {
+                final int n = i;
+                expected.add(n);
+                factory.queueOnEventThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        delivered.add(n);
+                    }
+                });
+            }
+            factory.queueOnEventThread(new Runnable() {
+                @Override
+                public void run() {
+                    done.countDown();
+                }
+            });
+
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertEquals(expected, delivered);
+
+            factory.shutdownThreads();
+            assertFalse(pool.isShutdown());
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void usesSuppliedTimersWithoutShuttingThemDown() {
+        final ScheduledExecutorService timers = Executors.newSingleThreadScheduledExecutor();
+        final Factory factory = new Factory(new PusherOptions().setTimerExecutor(timers));
+        try {
+            assertSame(timers, factory.getTimers());
+
+            factory.shutdownThreads();
+            assertFalse(timers.isShutdown());
+            assertSame(timers, factory.getTimers());
+        }
+        finally {
+            timers.shutdown();
+        }
+    }
+
+    @Test
+    public void runsEventThreadTasksAheadOfWaitingListenerTasks() throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        final List<String> ran = Collections.synchronizedList(new ArrayList<String>());
+
+        first.queueOnEventThread(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                }
+                catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 3; i++) {
+            final String name = "listener-" + i;
+            first.queueOnChannelThread("my-channel", new Runnable() {
+                @Override
+                public void run() {
+                    ran.add(name);
+                }
+            });
+        }
+        first.queueOnEventThread(new Runnable() {
+            @Override
+            public void run() {
+                ran.add("control");
+            }
+        });
+        first.queueOnChannelThread("my-channel", new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+        release.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("control", "listener-0", "listener-1", "listener-2"), ran);
+    }
+
+    @Test
+    public void sharesOneSSLSocketFactoryBetweenConnections() throws Exception {
+        assertSame(first.getSSLSocketFactory(), first.getSSLSocketFactory());
+        assertFalse(first.getSSLSocketFactory() == second.getSSLSocketFactory());
+    }
+
+    private static final int TASKS_PER_CLIENT = 200;
+    private static volatile long sink;
+
+    private static long timeEventTasks(final int clients) throws InterruptedException {
+        final List<Factory> factories = new ArrayList<Factory>();
+        for (int i = 0; i < clients; i++) {
+            factories.add(new Factory(new PusherOptions()));
+        }
+        final CountDownLatch done = new CountDownLatch(clients * TASKS_PER_CLIENT);
+        final Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                long x = 0;
+                for (int i = 0; i < 200000; i++) {
+                    x += i * 31L ^ x >>> 7;
+                }
+                sink = x;
+                done.countDown();
+            }
+        };
+        try {
+            final long start = System.nanoTime();
+            for (int i = 0; i < TASKS_PER_CLIENT; i++) {
+                for (final Factory factory : factories) {
+                    factory.queueOnEventThread(task);
+                }
+            }
+            assertTrue(done.await(60, TimeUnit.SECONDS));
+            return System.nanoTime() - start;
+        }
+        finally {
+            for (final Factory factory : factories) {
+                factory.shutdownThreads();
+            }
+        }
+    }
+}
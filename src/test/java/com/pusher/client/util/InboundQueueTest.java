@@ -0,0 +1,97 @@
+package com.pusher.client.util;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.pusher.client.connection.InboundOverflowPolicy;
+
+public class InboundQueueTest {
+
+    private final Runnable first = new Frame();
+    private final Runnable second = new Frame();
+    private final Runnable third = new Frame();
+
+    @Test
+    public void dropsTheNewEventWhenFull() {
+        final InboundQueue queue = new InboundQueue(2, InboundOverflowPolicy.DROP_NEWEST);
+
+        assertTrue(queue.offer(first));
+        assertTrue(queue.offer(second));
+        assertFalse(queue.offer(third));
+        assertFalse(queue.failsConnection());
+
+        assertEquals(2, queue.getDepth());
+        assertEquals(1, queue.getDropCount());
+        assertSame(first, queue.poll());
+        assertSame(second, queue.poll());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void dropsTheOldestEventWhenFull() {
+        final InboundQueue queue = new InboundQueue(2, InboundOverflowPolicy.DROP_OLDEST);
+
+        queue.offer(first);
+        queue.offer(second);
+        assertTrue(queue.offer(third));
+
+        assertEquals(1, queue.getDropCount());
+        assertSame(second, queue.poll());
+        assertSame(third, queue.poll());
+    }
+
+    @Test
+    public void countsWaitingDeliveriesAgainstTheCapacity() {
+        final InboundQueue queue = new InboundQueue(2, InboundOverflowPolicy.FAIL_CONNECTION);
+        queue.deliveryQueued();
+        queue.deliveryQueued();
+
+        assertFalse(queue.offer(first));
+        assertTrue(queue.failsConnection());
+        assertEquals(2, queue.getDepth());
+
+        queue.deliveryDone();
+        assertTrue(queue.offer(first));
+    }
+
+    @Test
+    public void isUnboundedWithoutACapacity() {
+        final InboundQueue queue = new InboundQueue(0, InboundOverflowPolicy.DROP_NEWEST);
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(queue.offer(first));
+        }
+        assertEquals(1000, queue.getDepth());
+    }
+
+    @Test
+    public void blocksTheReaderUntilThereIsRoom() throws InterruptedException {
+        final InboundQueue queue = new InboundQueue(1, InboundOverflowPolicy.BLOCK);
+        queue.offer(first);
+        final CountDownLatch offered = new CountDownLatch(1);
+
+        final Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                queue.offer(second);
+                offered.countDown();
+            }
+        });
+        reader.start();
+        assertFalse(offered.await(100, TimeUnit.MILLISECONDS));
+
+        assertSame(first, queue.poll());
+        assertTrue(offered.await(5, TimeUnit.SECONDS));
+        assertSame(second, queue.poll());
+        assertEquals(0, queue.getDropCount());
+    }
+
+    private static class Frame implements Runnable {
+        @Override
+        public void run() {
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.pusher.client.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+import com.pusher.client.util.internal.JsonHeaderScanner;
+import org.junit.Test;
+
+public class JsonHeaderScannerTest {
+
+    @Test
+    public void scansFieldsInAnyOrder() {
+        final String json = "{\"event\":\"my-event\",\"data\":\"{\\\"channel\\\":\\\"nope\\\"}\",\"channel\":\"my-channel\"}";
+        assertArrayEquals(new String[] { "my-event", "my-channel" },
+                JsonHeaderScanner.scan(json, "event", "channel"));
+    }
+
+    @Test
+    public void skipsNestedValuesAndLiterals() {
+        final String json = " { \"data\" : {\"a\":[1, {\"channel\":\"x\"}], \"b\":\"}\"} , \"n\": -1.5e3, \"t\": true ,"
+                + " \"channel\" : \"my-channel\" } ";
+        assertArrayEquals(new String[] { null, "my-channel" }, JsonHeaderScanner.scan(json, "event", "channel"));
+    }
+
+    @Test
+    public void unescapesValuesAndKeys() {
+        final String json = "{\"ev\\u0065nt\":\"a\\\"b\\\\c\\n\\u00e9\",\"channel\":null}";
+        assertArrayEquals(new String[] { "a\"b\\c\n\u00e9", null }, JsonHeaderScanner.scan(json, "event", "channel"));
+    }
+
+    @Test
+    public void returnsNullWhenFieldIsNotAString() {
+        assertNull(JsonHeaderScanner.scan("{\"event\":42,\"channel\":\"c\"}", "event", "channel"));
+    }
+
+    @Test
+    public void returnsNullWhenMalformed() {
+        assertNull(JsonHeaderScanner.scan("{\"event\":\"my-ev", "event", "channel"));
+        assertNull(JsonHeaderScanner.scan("[\"event\"]", "event", "channel"));
+        assertNull(JsonHeaderScanner.scan("", "event", "channel"));
+    }
+}
@@ -0,0 +1,56 @@
+package com.pusher.client.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.pusher.client.util.internal.OutboundMessageEncoder;
+import org.junit.Test;
+
+public class OutboundMessageEncoderTest {
+
+    @Test
+    public void encodesPrivateSubscribe() {
+        assertEquals("{\"event\":\"pusher:subscribe\",\"data\":{\"channel\":\"private-c\",\"auth\":\"key:sig\"}}",
+                OutboundMessageEncoder.subscribe("private-c", "key:sig", null));
+    }
+
+    @Test
+    public void escapesChannelData() {
+        final String channelData = "{\"user_id\":\"a\\\"b\"}";
+        assertEquals("{\"event\":\"pusher:subscribe\",\"data\":{\"channel\":\"presence-c\",\"auth\":\"key:sig\","
+                        + "\"channel_data\":\"{\\\"user_id\\\":\\\"a\\\\\\\"b\\\"}\"}}",
+                OutboundMessageEncoder.subscribe("presence-c", "key:sig", channelData));
+    }
+
+    @Test
+    public void encodesClientEventLikeTheCodec() {
+        final String data = "{\"fish\":\"chips\\n\\u0000\"}\u2028";
+        final Map<String, Object> message = new LinkedHashMap<String, Object>();
+        message.put("event", "client-event");
+        message.put("channel", "private-c");
+        message.put("data", data);
+
+        assertEquals(new StreamingJsonCodec().encode(message),
+                OutboundMessageEncoder.clientEvent("client-event", "private-c", data));
+    }
+
+    @Test
+    public void leavesOutNullData() {
+        assertEquals("{\"event\":\"client-event\",\"channel\":\"private-c\"}",
+                OutboundMessageEncoder.clientEvent("client-event", "private-c", null));
+    }
+
+    @Test
+    public void doesNotRetainOversizedBuffers() {
+        final StringBuilder data = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            data.append('x');
+        }
+        OutboundMessageEncoder.clientEvent("client-event", "private-c", data.toString());
+
+        assertEquals("{\"event\":\"pusher:unsubscribe\",\"data\":{\"channel\":\"c\"}}",
+                OutboundMessageEncoder.unsubscribe("c"));
+    }
+}
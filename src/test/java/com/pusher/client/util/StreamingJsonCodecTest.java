@@ -0,0 +1,97 @@
+package com.pusher.client.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class StreamingJsonCodecTest {
+
+    private final JsonCodec codec = new StreamingJsonCodec();
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void decodesNestedValues() {
+        final Map<String, Object> map = codec.decodeObject(
+                " {\"s\":\"a\\\"b\\u00e9\", \"n\": -1.5e3, \"t\":true, \"f\":false, \"z\":null,"
+                        + " \"o\":{\"l\":[1, \"x\", {}]}} ");
+
+        assertEquals("a\"b\u00e9", map.get("s"));
+        assertEquals(-1500.0, map.get("n"));
+        assertEquals(Boolean.TRUE, map.get("t"));
+        assertEquals(Boolean.FALSE, map.get("f"));
+        assertNull(map.get("z"));
+        final List<Object> list = (List<Object>)((Map<String, Object>)map.get("o")).get("l");
+        assertEquals(Arrays.asList(1.0, "x", new LinkedHashMap<String, Object>()), list);
+    }
+
+    @Test
+    public void decodesNothingToNull() {
+        assertNull(codec.decodeObject(null));
+        assertNull(codec.decodeObject("  "));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTruncatedInput() {
+        codec.decodeObject("{\"event\":\"my-ev");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTrailingContent() {
+        codec.decodeObject("{} {}");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonObjects() {
+        codec.decodeObject("[1]");
+    }
+
+    @Test
+    public void encodesInInsertionOrder() {
+        final Map<String, Object> data = new LinkedHashMap<String, Object>();
+        data.put("channel", "my-channel");
+        data.put("ids", Arrays.asList("a", null, 2, true));
+        final Map<String, Object> message = new LinkedHashMap<String, Object>();
+        message.put("event", "pusher:subscribe");
+        message.put("data", data);
+
+        assertEquals("{\"event\":\"pusher:subscribe\",\"data\":{\"channel\":\"my-channel\",\"ids\":[\"a\",null,2,true]}}",
+                codec.encode(message));
+    }
+
+    @Test
+    public void escapesStrings() {
+        assertEquals("\"q\\\"b\\\\n\\nc\\u0001\\u2028\"", codec.encode("q\"b\\n\nc\u0001\u2028"));
+    }
+
+    @Test
+    public void roundTripsThroughGson() {
+        final String json = "{\"event\":\"client-e\",\"channel\":\"private-c\",\"data\":\"{\\\"a\\\":[1.5,\\\"\\\\u00e9\\\"]}\"}";
+        assertEquals(new GsonJsonCodec().decodeObject(json), codec.decodeObject(codec.encode(codec.decodeObject(json))));
+    }
+
+    @Test
+    public void decodesBeanTypes() {
+        assertEquals(2, codec.decode("{\"count\":2}", Fish.class).count);
+        assertNull(codec.decode("", Fish.class));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsBeansThatDoNotMatch() {
+        codec.decode("{\"count\":\"many\"}", Fish.class);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonFiniteNumbers() {
+        codec.encode(Double.NaN);
+    }
+
+    private static class Fish {
+        int count;
+    }
+}